@@ -0,0 +1,49 @@
+package org.jfsk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Creating a decoder, as done once per call leg, compared with resetting a pooled one.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConstructionBenchmark {
+
+	@Param({"BRUTE_FORCE", "SLIDING_DFT"})
+	public CorrelatorEngine engine;
+
+	private FskDecoderPool pool;
+
+	@Setup
+	public void setUp() {
+		pool = new FskDecoderPool(FskModemProfile.CUSTOM_EXAMPLE, engine, 1);
+	}
+
+	@Benchmark
+	public FskDecoder construct() {
+		return new FskDecoder(FskModemProfile.CUSTOM_EXAMPLE, engine);
+	}
+
+	@Benchmark
+	public FskDecoder borrowAndRelease() {
+		FskDecoder decoder = pool.borrow();
+		pool.release(decoder);
+		return decoder;
+	}
+}
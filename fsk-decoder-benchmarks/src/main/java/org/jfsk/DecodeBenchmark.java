@@ -0,0 +1,128 @@
+package org.jfsk;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end decoding of a 4 MB capture holding a single frame after 2M samples of low level 
+ * noise, against a stream handing out one byte per read as the decoder used to consume it. 
+ * Reported per sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+	private static final int NOISE_SAMPLES = 2 * 1024 * 1024;
+	private static final int SAMPLES = NOISE_SAMPLES + 30000;
+
+	@Param({"BRUTE_FORCE", "SLIDING_DFT", "FLOAT", "FIXED_POINT"})
+	public CorrelatorEngine engine;
+
+	private byte[] pcm;
+	private File pcmFile;
+	private FskDecoder decoder;
+	private final ByteBuffer frameBuffer = ByteBuffer.allocateDirect(4096);
+
+	@Setup
+	public void setUp() throws Exception {
+		FskEncoder encoder = new FskEncoder(FskModemProfile.CUSTOM_EXAMPLE);
+		encoder.setSeed(42);
+		encoder.setNoise(0.005);
+		encoder.setLeadingSilence(NOISE_SAMPLES);
+		pcm = encoder.encode(new byte[144]);
+		pcmFile = File.createTempFile("fsk-benchmark", ".pcm");
+		FileOutputStream out = new FileOutputStream(pcmFile);
+		try {
+			out.write(pcm);
+		} finally {
+			out.close();
+		}
+		decoder = new FskDecoder(FskModemProfile.CUSTOM_EXAMPLE, engine);
+		if (decoder.decode(new ByteArrayInputStream(pcm)) == null) {
+			throw new IllegalStateException("Benchmark capture does not decode");
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		pcmFile.delete();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public byte[] decodeStream() throws Exception {
+		decoder.reset();
+		return decoder.decode(new ByteArrayInputStream(pcm));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public byte[] decodeStreamByteAtATime() throws Exception {
+		decoder.reset();
+		return decoder.decode(new ByteAtATimeInputStream(new ByteArrayInputStream(pcm)));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public int decodeStreamIntoBuffer() throws Exception {
+		decoder.reset();
+		frameBuffer.clear();
+		return decoder.decodeInto(new ByteArrayInputStream(pcm), frameBuffer);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public byte[] decodeFile() throws Exception {
+		decoder.reset();
+		return decoder.decode(pcmFile);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public byte[] decodeMappedFile() throws Exception {
+		decoder.reset();
+		return decoder.decode(pcmFile.toPath());
+	}
+
+	/**
+	 * Returns at most one byte per read, so the decoder pays a read call per byte as it did before 
+	 * reading in blocks.
+	 */
+	private static class ByteAtATimeInputStream extends FilterInputStream {
+		ByteAtATimeInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0) return 0;
+			int value = in.read();
+			if (value == -1) return -1;
+			b[off] = (byte) value;
+			return 1;
+		}
+	}
+}
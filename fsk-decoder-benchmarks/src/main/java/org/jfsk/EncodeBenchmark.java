@@ -0,0 +1,54 @@
+package org.jfsk;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generating frames with {@link FskEncoder}, to size corpus generation for load tests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+	
+	@Param({"0", "0.05"})
+	public double noise;
+
+	private final byte[] payload = new byte[144];
+	private final OutputStream discard = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+	private FskEncoder encoder;
+
+	@Setup
+	public void setUp() {
+		encoder = new FskEncoder(FskModemProfile.CUSTOM_EXAMPLE);
+		encoder.setNoise(noise);
+	}
+
+	@Benchmark
+	public void encodeFrame() throws Exception {
+		encoder.encode(payload, discard);
+	}
+}
@@ -0,0 +1,81 @@
+package org.jfsk;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Compares a correlator engine with the double precision {@link CorrelatorEngine#BRUTE_FORCE} 
+ * engine across signal to noise ratios. For each SNR it encodes a number of random frames with 
+ * {@link FskEncoder}, then prints:
+ * <ul>
+ * <li>the share of per-sample mark/space decisions on which both engines agree,</li>
+ * <li>the frames each engine decodes correctly,</li>
+ * <li>the frames on which both engines return identical bytes.</li>
+ * </ul>
+ * 
+ * Decisions are compared at the rate the decoder correlates at: high-rate captures are first run 
+ * through the decoder's {@link Decimator}.
+ * 
+ * Usage: {@code java -cp target/benchmarks.jar org.jfsk.EngineAccuracyReport [engine] [frames per SNR] [sample rate]}. 
+ * Defaults to FLOAT, 50 frames, 8000 Hz.
+ */
+public class EngineAccuracyReport {
+	private static final double[] SNR_DB = {30, 20, 15, 12, 10, 8, 6, 4, 2, 0};
+	private static final double AMPLITUDE = 0.5;
+
+	public static void main(String[] args) throws Exception {
+		CorrelatorEngine engine = args.length > 0 ? CorrelatorEngine.valueOf(args[0]) : CorrelatorEngine.FLOAT;
+		int frames = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int sampleRate = args.length > 2 ? Integer.parseInt(args[2]) : FskDecoder.SAMPLE_RATE;
+		FskModemProfile profile = FskModemProfile.CUSTOM_EXAMPLE.withSampleRate(sampleRate);
+		int downsamplingCount = FskDecoder.downsamplingCount(profile);
+		CorrelatorTables tables = CorrelatorTables.get(profile.getFreqMark(), profile.getFreqSpace(), sampleRate, downsamplingCount);
+
+		System.out.println(engine + " against BRUTE_FORCE, " + profile + ", decimated by " + downsamplingCount + ", " 
+				+ frames + " frames per SNR");
+		System.out.println(String.format("%8s %18s %14s %14s %12s", "SNR (dB)", "decision agreement", "double frames", "engine frames", "identical"));
+		Random random = new Random(42);
+		for (double snr : SNR_DB) {
+			long decisions = 0;
+			long agreements = 0;
+			int doubleFrames = 0;
+			int engineFrames = 0;
+			int identical = 0;
+			for (int i = 0; i < frames; i++) {
+				byte[] payload = new byte[144];
+				random.nextBytes(payload);
+				FskEncoder encoder = new FskEncoder(profile);
+				encoder.setSeed(random.nextLong());
+				encoder.setAmplitude(AMPLITUDE);
+				encoder.setNoise(AMPLITUDE / Math.sqrt(2 * Math.pow(10, snr / 10)));
+				byte[] pcm = encoder.encode(payload);
+
+				FskCorrelator reference = CorrelatorEngine.BRUTE_FORCE.create(tables);
+				FskCorrelator candidate = engine.create(tables);
+				Decimator decimator = tables.decimationTaps != null ? new Decimator(tables.decimationTaps, downsamplingCount) : null;
+				for (int j = 0; j + 1 < pcm.length; j += 2) {
+					short sample = (short) ((pcm[j + 1] << 8) | (pcm[j] & 0xff));
+					if (decimator != null) {
+						if (!decimator.add(sample)) continue;
+						sample = decimator.output();
+					}
+					if (reference.isMark(sample) == candidate.isMark(sample)) agreements++;
+					decisions++;
+				}
+
+				byte[] doubleBytes = new FskDecoder(profile, CorrelatorEngine.BRUTE_FORCE).decode(new ByteArrayInputStream(pcm));
+				byte[] engineBytes = new FskDecoder(profile, engine).decode(new ByteArrayInputStream(pcm));
+				if (isPayload(doubleBytes, payload)) doubleFrames++;
+				if (isPayload(engineBytes, payload)) engineFrames++;
+				if (Arrays.equals(doubleBytes, engineBytes)) identical++;
+			}
+			System.out.println(String.format("%8.0f %17.5f%% %14d %14d %12d", snr, 100.0 * agreements / decisions, doubleFrames, engineFrames, identical));
+		}
+	}
+
+	private static boolean isPayload(byte[] decoded, byte[] payload) {
+		return decoded != null && decoded.length == payload.length + 2 
+				&& Arrays.equals(Arrays.copyOfRange(decoded, 2, decoded.length), payload);
+	}
+}
@@ -0,0 +1,83 @@
+package org.jfsk;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The 4B/6B code to nibble lookup done for every received code, against the 16-case switch it 
+ * replaced. Reported per code.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NibbleBenchmark {
+	private static final int CODES = 4096;
+
+	private int[] codes;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		codes = new int[CODES];
+		for (int i = 0; i < CODES; i++) {
+			codes[i] = random.nextInt(64);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CODES)
+	public int lookup() {
+		int sum = 0;
+		for (int i = 0; i < CODES; i++) {
+			sum += FskDecoder.sixBToNibble(codes[i]);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CODES)
+	public int lookupSwitch() {
+		int sum = 0;
+		for (int i = 0; i < CODES; i++) {
+			sum += switchSixBToNibble(codes[i]);
+		}
+		return sum;
+	}
+
+	private static int switchSixBToNibble(int sixBCode) {
+		switch (sixBCode) {
+			case 0x12: return 0x00;
+			case 0x13: return 0x01;
+			case 0x14: return 0x02;
+			case 0x15: return 0x03;
+			case 0x16: return 0x04;
+			case 0x19: return 0x05;
+			case 0x1A: return 0x06;
+			case 0x23: return 0x07;
+			case 0x24: return 0x08;
+			case 0x25: return 0x09;
+			case 0x26: return 0x0A;
+			case 0x29: return 0x0B;
+			case 0x2A: return 0x0C;
+			case 0x2B: return 0x0D;
+			case 0x2C: return 0x0E;
+			case 0x2D: return 0x0F;
+			default: return -1;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.jfsk;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Decoding the same capture, one second of low level noise followed by a frame, recorded at 
+ * different sample rates. Captures sampled well above the modem tones are decimated before 
+ * correlation, so the time per capture grows much less than the sample rate. Reported per capture.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleRateBenchmark {
+
+	@Param({"8000", "16000", "44100", "48000"})
+	public int sampleRate;
+
+	@Param({"BRUTE_FORCE", "SLIDING_DFT"})
+	public CorrelatorEngine engine;
+
+	private byte[] pcm;
+	private FskDecoder decoder;
+
+	@Setup
+	public void setUp() throws Exception {
+		FskModemProfile profile = FskModemProfile.CUSTOM_EXAMPLE.withSampleRate(sampleRate);
+		FskEncoder encoder = new FskEncoder(profile);
+		encoder.setSeed(42);
+		encoder.setNoise(0.005);
+		encoder.setLeadingSilence(sampleRate);
+		pcm = encoder.encode(new byte[144]);
+		decoder = new FskDecoder(profile, engine);
+		if (decoder.decode(new ByteArrayInputStream(pcm)) == null) {
+			throw new IllegalStateException("Benchmark capture does not decode");
+		}
+	}
+
+	@Benchmark
+	public byte[] decodeCapture() throws Exception {
+		decoder.reset();
+		return decoder.decode(new ByteArrayInputStream(pcm));
+	}
+}
@@ -0,0 +1,65 @@
+package org.jfsk;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The Vector API correlator against the scalar loop, at window sizes from 8 to 192 samples. 
+ * Needs JDK 17+ and the decoder built with the {@code vector} profile; otherwise setup fails 
+ * rather than silently measuring the scalar fallback. Reported per sample.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorCorrelatorBenchmark {
+	private static final int SAMPLES = 8192;
+
+	@Param({"BRUTE_FORCE", "VECTOR"})
+	public CorrelatorEngine engine;
+
+	@Param({"8000", "48000", "192000"})
+	public int sampleRate;
+
+	private short[] samples;
+	private FskCorrelator correlator;
+
+	@Setup
+	public void setUp() {
+		if (!VectorSupport.isAvailable()) {
+			throw new IllegalStateException("Vector API correlator not available, build the decoder with -Pvector");
+		}
+		FskModemProfile profile = FskModemProfile.CUSTOM_EXAMPLE.withSampleRate(sampleRate);
+		correlator = engine.create(CorrelatorTables.get(profile.getFreqMark(), profile.getFreqSpace(), sampleRate, 1));
+		Random random = new Random(42);
+		samples = new short[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			samples[i] = (short) random.nextInt(65536);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public int correlate() {
+		int marks = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			if (correlator.isMark(samples[i])) marks++;
+		}
+		return marks;
+	}
+}
@@ -0,0 +1,85 @@
+package org.jfsk;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Correlator that computes the same four dot products as {@link FloatCorrelator} with the JDK
+ * Vector API. Single precision fits twice as many lanes in a vector as {@link VectorCorrelator}.
+ *
+ * The window is kept twice over in a buffer of double length, as in {@link VectorCorrelator}. Sums
+ * are accumulated lane by lane, so results can differ from the scalar loop by rounding.
+ *
+ * Only compiled with the {@code vector} profile and loaded through {@link CorrelatorEngine#FLOAT},
+ * which falls back to the scalar loop when this class or the {@code jdk.incubator.vector} module
+ * is not available.
+ */
+final class FloatVectorCorrelator implements FskCorrelator {
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	private final float markSinTable[];
+	private final float markCosTable[];
+	private final float spaceSinTable[];
+	private final float spaceCosTable[];
+	private final float handleBuffer[];
+	private final int handleCorrSize;
+	private final int loopBound;
+	private int handleRingStart = 0;
+
+	FloatVectorCorrelator(CorrelatorTables tables) {
+		markSinTable = tables.floatCorrelates[0];
+		markCosTable = tables.floatCorrelates[1];
+		spaceSinTable = tables.floatCorrelates[2];
+		spaceCosTable = tables.floatCorrelates[3];
+		handleCorrSize = markSinTable.length;
+		handleBuffer = new float[handleCorrSize * 2];
+		loopBound = SPECIES.loopBound(handleCorrSize);
+	}
+
+	@Override
+	public boolean isMark(short sample) {
+		float val = sample / 32768f;
+		handleBuffer[handleRingStart] = val;
+		handleBuffer[handleRingStart + handleCorrSize] = val;
+		if (++handleRingStart >= handleCorrSize) {
+			handleRingStart = 0;
+		}
+
+		// oldest to newest sample of the window
+		int window = handleRingStart;
+		FloatVector markSinSum = FloatVector.zero(SPECIES);
+		FloatVector markCosSum = FloatVector.zero(SPECIES);
+		FloatVector spaceSinSum = FloatVector.zero(SPECIES);
+		FloatVector spaceCosSum = FloatVector.zero(SPECIES);
+		int i = 0;
+		for (; i < loopBound; i += SPECIES.length()) {
+			FloatVector samples = FloatVector.fromArray(SPECIES, handleBuffer, window + i);
+			markSinSum = FloatVector.fromArray(SPECIES, markSinTable, i).fma(samples, markSinSum);
+			markCosSum = FloatVector.fromArray(SPECIES, markCosTable, i).fma(samples, markCosSum);
+			spaceSinSum = FloatVector.fromArray(SPECIES, spaceSinTable, i).fma(samples, spaceSinSum);
+			spaceCosSum = FloatVector.fromArray(SPECIES, spaceCosTable, i).fma(samples, spaceCosSum);
+		}
+		float markSin = markSinSum.reduceLanes(VectorOperators.ADD);
+		float markCos = markCosSum.reduceLanes(VectorOperators.ADD);
+		float spaceSin = spaceSinSum.reduceLanes(VectorOperators.ADD);
+		float spaceCos = spaceCosSum.reduceLanes(VectorOperators.ADD);
+		for (; i < handleCorrSize; i++) {
+			float v = handleBuffer[window + i];
+			markSin += markSinTable[i] * v;
+			markCos += markCosTable[i] * v;
+			spaceSin += spaceSinTable[i] * v;
+			spaceCos += spaceCosTable[i] * v;
+		}
+
+		return (markSin * markSin + markCos * markCos > spaceSin * spaceSin + spaceCos * spaceCos);
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(handleBuffer, 0);
+		handleRingStart = 0;
+	}
+}
@@ -0,0 +1,87 @@
+package org.jfsk;
+
+import java.util.Arrays;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Correlator that computes the same four dot products as {@link BruteForceCorrelator} with the 
+ * JDK Vector API.
+ * 
+ * The ring buffer is kept twice over in a buffer of double length: each sample is written at its 
+ * ring position and again one window further, so the window always sits in one contiguous slice 
+ * that can be loaded without wrapping. Sums are accumulated lane by lane, so results can differ 
+ * from the scalar loop by rounding.
+ * 
+ * Only compiled with the {@code vector} profile and loaded through {@link CorrelatorEngine#VECTOR}, 
+ * which falls back to the scalar loop when this class or the {@code jdk.incubator.vector} module 
+ * is not available.
+ */
+final class VectorCorrelator implements FskCorrelator {
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+	private final double markSinTable[];
+	private final double markCosTable[];
+	private final double spaceSinTable[];
+	private final double spaceCosTable[];
+	private final double handleBuffer[];
+	private final int handleCorrSize;
+	private final int loopBound;
+	private int handleRingStart = 0;
+
+	VectorCorrelator(CorrelatorTables tables) {
+		markSinTable = tables.correlates[0];
+		markCosTable = tables.correlates[1];
+		spaceSinTable = tables.correlates[2];
+		spaceCosTable = tables.correlates[3];
+		handleCorrSize = markSinTable.length;
+		handleBuffer = new double[handleCorrSize * 2];
+		loopBound = SPECIES.loopBound(handleCorrSize);
+	}
+
+	@Override
+	public boolean isMark(short sample) {
+		double val = (double) sample / 32768;
+		handleBuffer[handleRingStart] = val;
+		handleBuffer[handleRingStart + handleCorrSize] = val;
+		if (++handleRingStart >= handleCorrSize) {
+			handleRingStart = 0;
+		}
+
+		// oldest to newest sample of the window
+		int window = handleRingStart;
+		DoubleVector markSinSum = DoubleVector.zero(SPECIES);
+		DoubleVector markCosSum = DoubleVector.zero(SPECIES);
+		DoubleVector spaceSinSum = DoubleVector.zero(SPECIES);
+		DoubleVector spaceCosSum = DoubleVector.zero(SPECIES);
+		int i = 0;
+		for (; i < loopBound; i += SPECIES.length()) {
+			DoubleVector samples = DoubleVector.fromArray(SPECIES, handleBuffer, window + i);
+			markSinSum = DoubleVector.fromArray(SPECIES, markSinTable, i).fma(samples, markSinSum);
+			markCosSum = DoubleVector.fromArray(SPECIES, markCosTable, i).fma(samples, markCosSum);
+			spaceSinSum = DoubleVector.fromArray(SPECIES, spaceSinTable, i).fma(samples, spaceSinSum);
+			spaceCosSum = DoubleVector.fromArray(SPECIES, spaceCosTable, i).fma(samples, spaceCosSum);
+		}
+		double markSin = markSinSum.reduceLanes(VectorOperators.ADD);
+		double markCos = markCosSum.reduceLanes(VectorOperators.ADD);
+		double spaceSin = spaceSinSum.reduceLanes(VectorOperators.ADD);
+		double spaceCos = spaceCosSum.reduceLanes(VectorOperators.ADD);
+		for (; i < handleCorrSize; i++) {
+			double v = handleBuffer[window + i];
+			markSin += markSinTable[i] * v;
+			markCos += markCosTable[i] * v;
+			spaceSin += spaceSinTable[i] * v;
+			spaceCos += spaceCosTable[i] * v;
+		}
+
+		return (markSin * markSin + markCos * markCos > spaceSin * spaceSin + spaceCos * spaceCos);
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(handleBuffer, 0);
+		handleRingStart = 0;
+	}
+}
@@ -0,0 +1,192 @@
+package org.jfsk;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Decodes many PCM files in parallel on a caller supplied executor.
+ * 
+ * Each file is decoded by its own task with a decoder borrowed from an {@link FskDecoderPool}, so 
+ * decoders are reused between files but never shared between threads. At most {@code maxInFlight} 
+ * files are submitted to the executor at any time; submission blocks until a file completes, which 
+ * keeps memory flat however many files are in the batch. Results are passed to a 
+ * {@link BatchResultSink} as each file completes, in completion order.
+ *
+ *<pre> {@code
+ *  ExecutorService executor = Executors.newFixedThreadPool(8);
+ *  BatchFskDecoder batchDecoder = new BatchFskDecoder(FskModemProfile.CUSTOM_EXAMPLE, executor, 32);
+ *  batchDecoder.decode(new File("/path/to/captures"), sink);
+ *  executor.shutdown();
+ * }</pre>
+ */
+public class BatchFskDecoder {
+	private static final Logger logger = Logger.getLogger(BatchFskDecoder.class.getName());
+	
+	private final Executor executor;
+	private final int maxInFlight;
+	private final FskDecoderPool decoderPool;
+
+	/**
+	 * @param profile modem profile of the files
+	 * @param executor executor the files are decoded on
+	 * @param maxInFlight maximum number of files submitted to the executor at once
+	 */
+	public BatchFskDecoder(FskModemProfile profile, Executor executor, int maxInFlight) {
+		this(profile, CorrelatorEngine.BRUTE_FORCE, executor, maxInFlight);
+	}
+
+	/**
+	 * @param profile modem profile of the files
+	 * @param engine correlator engine of the decoders
+	 * @param executor executor the files are decoded on
+	 * @param maxInFlight maximum number of files submitted to the executor at once
+	 */
+	public BatchFskDecoder(FskModemProfile profile, CorrelatorEngine engine, Executor executor, int maxInFlight) {
+		if (maxInFlight <= 0) {
+			throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+		}
+		this.executor = executor;
+		this.maxInFlight = maxInFlight;
+		this.decoderPool = new FskDecoderPool(profile, engine, maxInFlight);
+	}
+
+	/**
+	 * Decodes every {@code .pcm} file of the given directory. The directory is listed lazily, so 
+	 * it may hold any number of files. Returns once every file has been passed to the sink.
+	 * 
+	 * If listing or submitting stops early, on an interrupt or a 
+	 * {@link java.util.concurrent.RejectedExecutionException}, the files already submitted are still 
+	 * decoded and passed to the sink before the exception is thrown.
+	 * 
+	 * @param directory directory holding the PCM files
+	 * @param sink receives one result per file
+	 * @throws IOException if the directory cannot be listed
+	 * @throws InterruptedException if interrupted while waiting for files to complete
+	 */
+	public void decode(File directory, BatchResultSink sink) throws IOException, InterruptedException {
+		DirectoryStream<Path> files = Files.newDirectoryStream(directory.toPath(), "*.pcm");
+		try {
+			Batch batch = new Batch(sink);
+			boolean submitted = false;
+			try {
+				for (Path file : files) {
+					batch.submit(file.toFile());
+				}
+				submitted = true;
+			} finally {
+				if (!submitted) batch.drain();
+			}
+			batch.await();
+		} finally {
+			files.close();
+		}
+	}
+
+	/**
+	 * Decodes the given files. Returns once every file has been passed to the sink. If submitting 
+	 * stops early, the files already submitted are still decoded, as with {@link #decode(File, BatchResultSink)}.
+	 * 
+	 * @param files PCM files to decode
+	 * @param sink receives one result per file
+	 * @throws InterruptedException if interrupted while waiting for files to complete
+	 */
+	public void decode(Iterable<File> files, BatchResultSink sink) throws InterruptedException {
+		Batch batch = new Batch(sink);
+		boolean submitted = false;
+		try {
+			for (File file : files) {
+				batch.submit(file);
+			}
+			submitted = true;
+		} finally {
+			if (!submitted) batch.drain();
+		}
+		batch.await();
+	}
+
+	private BatchResult decodeFile(File file) {
+		long startTimeMillis = System.currentTimeMillis();
+		long start = System.nanoTime();
+		FskDecoder decoder = decoderPool.borrow();
+		try {
+			// null unless a frame was received to its end
+			byte[] data = decoder.decode(file);
+			if (data == null) {
+				return new BatchResult(file, null, BatchResult.Status.NO_FRAME, 0, null, startTimeMillis, System.nanoTime() - start);
+			}
+			return new BatchResult(file, data, BatchResult.Status.DECODED, decoder.getInvalidCodeCount(), null, 
+					startTimeMillis, System.nanoTime() - start);
+		} catch (Exception e) {
+			return new BatchResult(file, null, BatchResult.Status.FAILED, 0, e, startTimeMillis, System.nanoTime() - start);
+		} finally {
+			decoderPool.release(decoder);
+		}
+	}
+
+	/**
+	 * Files of a single {@code decode} call, bounded by a semaphore with one permit per file in flight.
+	 */
+	private class Batch {
+		private final BatchResultSink sink;
+		private final Semaphore inFlight = new Semaphore(maxInFlight);
+
+		Batch(BatchResultSink sink) {
+			this.sink = sink;
+		}
+
+		void submit(final File file) throws InterruptedException {
+			inFlight.acquire();
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							deliver(decodeFile(file));
+						} finally {
+							inFlight.release();
+						}
+					}
+				});
+			} catch (RuntimeException e) {
+				inFlight.release();
+				throw e;
+			}
+		}
+
+		void await() throws InterruptedException {
+			try {
+				inFlight.acquire(maxInFlight);
+			} catch (InterruptedException e) {
+				drain();
+				throw e;
+			}
+			inFlight.release(maxInFlight);
+		}
+
+		/**
+		 * Waits, ignoring interrupts, for the files in flight to reach the sink, so none is still 
+		 * running once the batch is abandoned.
+		 */
+		void drain() {
+			inFlight.acquireUninterruptibly(maxInFlight);
+			inFlight.release(maxInFlight);
+		}
+
+		private void deliver(BatchResult result) {
+			try {
+				synchronized (sink) {
+					sink.accept(result);
+				}
+			} catch (RuntimeException e) {
+				logger.log(Level.SEVERE, "Result sink failed for " + result.getFile(), e);
+			}
+		}
+	}
+}
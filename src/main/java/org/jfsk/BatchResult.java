@@ -0,0 +1,90 @@
+package org.jfsk;
+
+import java.io.File;
+
+/**
+ * Outcome of decoding one file with {@link BatchFskDecoder}.
+ */
+public final class BatchResult {
+	
+	public enum Status {
+		/** A frame was received to its end and decoded. */
+		DECODED,
+		/** The file was read completely but held no complete frame. */
+		NO_FRAME,
+		/** The file could not be read or decoded; see {@link BatchResult#getError()}. */
+		FAILED
+	}
+
+	private final File file;
+	private final byte[] data;
+	private final Status status;
+	private final int invalidCodeCount;
+	private final Exception error;
+	private final long startTimeMillis;
+	private final long decodeTimeNanos;
+
+	BatchResult(File file, byte[] data, Status status, int invalidCodeCount, Exception error, long startTimeMillis, 
+			long decodeTimeNanos) {
+		this.file = file;
+		this.data = data;
+		this.status = status;
+		this.invalidCodeCount = invalidCodeCount;
+		this.error = error;
+		this.startTimeMillis = startTimeMillis;
+		this.decodeTimeNanos = decodeTimeNanos;
+	}
+
+	/**
+	 * @return decoded file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return decoded data bytes, or null unless the status is {@link Status#DECODED}
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return number of invalid 6-bit codes in the decoded frame, 0 if it was received cleanly or 
+	 * the status is not {@link Status#DECODED}
+	 * @see FskDecoder#getInvalidCodeCount()
+	 */
+	public int getInvalidCodeCount() {
+		return invalidCodeCount;
+	}
+
+	/**
+	 * @return the failure, or null unless the status is {@link Status#FAILED}
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	/**
+	 * @return wall clock time at which decoding of the file started, in milliseconds since the epoch
+	 */
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	/**
+	 * @return time spent decoding the file, including reading it, in nanoseconds
+	 */
+	public long getDecodeTimeNanos() {
+		return decodeTimeNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult[file=" + file + ", status=" + status + ", decodeTimeNanos=" + decodeTimeNanos + "]";
+	}
+}
@@ -0,0 +1,15 @@
+package org.jfsk;
+
+/**
+ * Receives the results of a {@link BatchFskDecoder} run as files complete.
+ */
+public interface BatchResultSink {
+
+	/**
+	 * Called once per file, from a worker thread. Calls are serialized, so implementations need 
+	 * not be thread safe, but should return quickly as they hold up the other workers.
+	 * 
+	 * @param result outcome of decoding one file
+	 */
+	void accept(BatchResult result);
+}
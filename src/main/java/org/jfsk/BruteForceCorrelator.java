@@ -0,0 +1,52 @@
+package org.jfsk;
+
+import java.util.Arrays;
+
+/**
+ * Correlator that recomputes the mark and space correlations over the whole window for every 
+ * sample. Cost is O(N) per sample, where N is the window size.
+ */
+class BruteForceCorrelator implements FskCorrelator {
+	private final double handleCorrelates[][];
+	private final double handleBuffer[];
+	private final int handleCorrSize;
+	private int handleRingStart = 0;
+
+	BruteForceCorrelator(CorrelatorTables tables) {
+		this.handleCorrelates = tables.correlates;
+		this.handleCorrSize = handleCorrelates[0].length;
+		this.handleBuffer = new double[handleCorrSize];
+	}
+
+	@Override
+	public boolean isMark(short sample) {
+		double val;
+		double markSin = 0, markCos = 0, spaceSin = 0, spaceCos = 0;
+		int i, j;
+		handleBuffer[handleRingStart++] = (double) sample / 32768;
+		if (handleRingStart >= handleCorrSize) {
+			handleRingStart = 0;
+		}
+		
+		j = handleRingStart;
+		for (i = 0; i < handleCorrSize; i++) {
+			if (j >= handleCorrSize) {
+				j = 0;
+			}
+			val = handleBuffer[j];
+			markSin += handleCorrelates[0][i] * val;
+			markCos += handleCorrelates[1][i] * val;
+			spaceSin += handleCorrelates[2][i] * val;
+			spaceCos += handleCorrelates[3][i] * val;
+			j++;
+		}
+
+		return (markSin * markSin + markCos * markCos > spaceSin * spaceSin + spaceCos * spaceCos);
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(handleBuffer, 0);
+		handleRingStart = 0;
+	}
+}
@@ -0,0 +1,71 @@
+package org.jfsk;
+
+/**
+ * Selects how {@link FskDecoder} correlates samples against the mark and space tones.
+ * All engines make the same mark/space decisions, up to floating point rounding.
+ */
+public enum CorrelatorEngine {
+	/**
+	 * Recomputes the correlations over the whole window for every sample. Cost grows with the 
+	 * window size, i.e. with the sample rate.
+	 */
+	BRUTE_FORCE {
+		@Override
+		FskCorrelator create(CorrelatorTables tables) {
+			return new BruteForceCorrelator(tables);
+		}
+	},
+
+	/**
+	 * Updates the correlations incrementally with a sliding DFT. Constant cost per sample, with 
+	 * periodic re-normalisation to bound rounding drift.
+	 */
+	SLIDING_DFT {
+		@Override
+		FskCorrelator create(CorrelatorTables tables) {
+			return new SlidingDftCorrelator(tables);
+		}
+	},
+
+	/**
+	 * Computes the same correlations as {@link #BRUTE_FORCE} with SIMD instructions through the 
+	 * JDK Vector API. Requires the library to be built with the {@code vector} profile and the JVM 
+	 * to be started with {@code --add-modules jdk.incubator.vector}; otherwise behaves exactly 
+	 * like {@link #BRUTE_FORCE}.
+	 */
+	VECTOR {
+		@Override
+		FskCorrelator create(CorrelatorTables tables) {
+			return VectorSupport.create(tables);
+		}
+	},
+
+	/**
+	 * Same as {@link #BRUTE_FORCE} in single precision, which halves the memory touched per sample. 
+	 * When the Vector API is available, as for {@link #VECTOR}, the sums are computed with SIMD 
+	 * instructions over twice as many lanes as {@link #VECTOR} uses; otherwise a scalar loop 
+	 * computes them, which gains nothing from the narrower type beyond the memory saved. 
+	 * Decisions can differ from the double precision engines when mark and space energies are 
+	 * nearly equal; see the accuracy report in the benchmarks module.
+	 */
+	FLOAT {
+		@Override
+		FskCorrelator create(CorrelatorTables tables) {
+			return VectorSupport.createFloat(tables);
+		}
+	},
+
+	/**
+	 * Correlates in integer arithmetic: samples stay 16-bit, tables are Q15 and sums are 64-bit. 
+	 * Cheaper than floating point on devices with weak FPUs, and bit-exact on every JVM: the tables, 
+	 * and the decimation filter used at high sample rates, are computed with {@link StrictMath}.
+	 */
+	FIXED_POINT {
+		@Override
+		FskCorrelator create(CorrelatorTables tables) {
+			return new FixedPointCorrelator(tables);
+		}
+	};
+
+	abstract FskCorrelator create(CorrelatorTables tables);
+}
@@ -0,0 +1,158 @@
+package org.jfsk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Precomputed sine and cosine tables used to correlate samples against the mark and space tones 
+ * of a modem profile. 
+ * 
+ * Tables are obtained through {@link #get(int, int, int, int)}, which keeps a process-wide cache 
+ * of the {@value #MAX_CACHED_TABLES} most recently used tables. Cached tables are shared by all 
+ * decoders and must be treated as read-only.
+ */
+final class CorrelatorTables {
+	private static final double MATH_PI        = 3.14159265358979323846;
+	private static final int MAX_CACHED_TABLES = 64;
+	
+	private static final Map<Key, CorrelatorTables> cache = new LinkedHashMap<Key, CorrelatorTables>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, CorrelatorTables> eldest) {
+			return size() > MAX_CACHED_TABLES;
+		}
+	};
+
+	/** Phase advance per sample of the mark and space tones. */
+	final double phiMark;
+	final double phiSpace;
+	
+	/** Mark sin, mark cos, space sin and space cos, one row each, over the correlation window. */
+	final double correlates[][];
+	
+	/** {@link #correlates} in single precision, for {@link FloatCorrelator}. */
+	final float floatCorrelates[][];
+	
+	/** 
+	 * {@link #correlates} in Q15 fixed point, for {@link FixedPointCorrelator}. Computed with 
+	 * {@link StrictMath}, so every JVM builds the same tables. 
+	 */
+	final int q15Correlates[][];
+	
+	/** Anti-aliasing filter of the {@link Decimator} run ahead of the correlator, or null if samples are not decimated. */
+	final double decimationTaps[];
+
+	/**
+	 * Returns the tables for the given tones, computing and caching them if needed. Tables are 
+	 * computed outside the cache lock, so two threads may compute the same tables concurrently; 
+	 * only one of them is kept.
+	 */
+	static CorrelatorTables get(int freqMark, int freqSpace, int sampleRate, int downsamplingCount) {
+		Key key = new Key(freqMark, freqSpace, sampleRate, downsamplingCount);
+		CorrelatorTables tables;
+		synchronized (cache) {
+			tables = cache.get(key);
+		}
+		if (tables != null) return tables;
+		
+		tables = new CorrelatorTables(freqMark, freqSpace, sampleRate, downsamplingCount);
+		synchronized (cache) {
+			CorrelatorTables cached = cache.get(key);
+			if (cached != null) return cached;
+			cache.put(key, tables);
+		}
+		return tables;
+	}
+
+	private CorrelatorTables(int freqMark, int freqSpace, int sampleRate, int downsamplingCount) {
+		int corrSize = (int) Math.round((double) sampleRate / downsamplingCount / freqMark);
+		phiMark = 2. * MATH_PI / ((double) sampleRate / (double) downsamplingCount / (double) freqMark);
+		phiSpace = 2. * MATH_PI / ((double) sampleRate / (double) downsamplingCount / (double) freqSpace);
+		
+		correlates = new double[4][corrSize];
+		for (int i = 0; i < corrSize; i++) {
+			correlates[0][i] = Math.sin(phiMark * (double) i);
+			correlates[1][i] = Math.cos(phiMark * (double) i);
+			correlates[2][i] = Math.sin(phiSpace * (double) i);
+			correlates[3][i] = Math.cos(phiSpace * (double) i);
+		}
+		
+		floatCorrelates = new float[4][corrSize];
+		for (int row = 0; row < 4; row++) {
+			for (int i = 0; i < corrSize; i++) {
+				floatCorrelates[row][i] = (float) correlates[row][i];
+			}
+		}
+		
+		q15Correlates = new int[4][corrSize];
+		for (int i = 0; i < corrSize; i++) {
+			q15Correlates[0][i] = (int) Math.round(StrictMath.sin(phiMark * (double) i) * 32767);
+			q15Correlates[1][i] = (int) Math.round(StrictMath.cos(phiMark * (double) i) * 32767);
+			q15Correlates[2][i] = (int) Math.round(StrictMath.sin(phiSpace * (double) i) * 32767);
+			q15Correlates[3][i] = (int) Math.round(StrictMath.cos(phiSpace * (double) i) * 32767);
+		}
+		
+		decimationTaps = downsamplingCount > 1 ? decimationTaps(Math.max(freqMark, freqSpace), sampleRate, downsamplingCount) : null;
+	}
+	
+	/**
+	 * Designs a Blackman windowed-sinc low-pass with its cut-off at half the decimated rate. The 
+	 * pass band keeps a 25% margin above the highest tone, and the stop band starts where aliases 
+	 * would fold back into it, which sets the transition width and so the number of taps. Taps are 
+	 * computed with {@link StrictMath}, so decimated samples are the same on every JVM.
+	 */
+	private static double[] decimationTaps(int maxTone, int sampleRate, int downsamplingCount) {
+		double decimatedRate = (double) sampleRate / downsamplingCount;
+		double passBand = maxTone * 1.25;
+		double transition = decimatedRate - 2 * passBand;
+		int tapCount = (int) Math.ceil(5.5 * sampleRate / transition) | 1;
+		double cutOff = decimatedRate / 2 / sampleRate;
+		
+		double taps[] = new double[tapCount];
+		double sum = 0;
+		int middle = tapCount / 2;
+		for (int i = 0; i < tapCount; i++) {
+			int n = i - middle;
+			double sinc = n == 0 ? 2 * cutOff : StrictMath.sin(2 * MATH_PI * cutOff * n) / (MATH_PI * n);
+			double window = 0.42 - 0.5 * StrictMath.cos(2 * MATH_PI * i / (tapCount - 1)) + 0.08 * StrictMath.cos(4 * MATH_PI * i / (tapCount - 1));
+			taps[i] = sinc * window;
+			sum += taps[i];
+		}
+		for (int i = 0; i < tapCount; i++) {
+			taps[i] /= sum;
+		}
+		return taps;
+	}
+
+	private static final class Key {
+		private final int freqMark;
+		private final int freqSpace;
+		private final int sampleRate;
+		private final int downsamplingCount;
+
+		Key(int freqMark, int freqSpace, int sampleRate, int downsamplingCount) {
+			this.freqMark = freqMark;
+			this.freqSpace = freqSpace;
+			this.sampleRate = sampleRate;
+			this.downsamplingCount = downsamplingCount;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) return false;
+			Key other = (Key) obj;
+			return freqMark == other.freqMark && freqSpace == other.freqSpace 
+					&& sampleRate == other.sampleRate && downsamplingCount == other.downsamplingCount;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = freqMark;
+			result = 31 * result + freqSpace;
+			result = 31 * result + sampleRate;
+			result = 31 * result + downsamplingCount;
+			return result;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package org.jfsk;
+
+import java.util.Arrays;
+
+/**
+ * Anti-aliasing low-pass FIR followed by a downsample by {@code M}, run ahead of the correlator 
+ * when the PCM data is sampled well above what the modem tones need.
+ * 
+ * The filter is only evaluated for the samples that are kept, which is the polyphase form of the 
+ * decimator: each input sample costs {@code taps / M} multiply-adds instead of {@code taps}. The 
+ * history is kept twice over in a buffer of double length, as in {@link FloatCorrelator}, so the 
+ * taps always meet one contiguous slice.
+ * 
+ * @see CorrelatorTables#decimationTaps
+ */
+final class Decimator {
+	private final double taps[];
+	private final double handleHistory[];
+	private final int handleTapCount;
+	private final int handleFactor;
+	private int handleRingStart = 0;
+	private int handlePhase = 0;
+	private short handleOutput;
+
+	/**
+	 * @param taps low-pass filter with a cut-off at half the decimated rate, symmetric
+	 * @param factor number of input samples per output sample
+	 */
+	Decimator(double taps[], int factor) {
+		this.taps = taps;
+		handleTapCount = taps.length;
+		handleFactor = factor;
+		handleHistory = new double[handleTapCount * 2];
+	}
+
+	/**
+	 * Adds a sample to the filter history.
+	 * 
+	 * @param sample 16-bit PCM sample at the input rate
+	 * @return true if a decimated sample is ready in {@link #output()}
+	 */
+	boolean add(short sample) {
+		handleHistory[handleRingStart] = sample;
+		handleHistory[handleRingStart + handleTapCount] = sample;
+		if (++handleRingStart >= handleTapCount) {
+			handleRingStart = 0;
+		}
+		if (++handlePhase < handleFactor) {
+			return false;
+		}
+		handlePhase = 0;
+
+		double acc = 0;
+		int window = handleRingStart;
+		for (int i = 0; i < handleTapCount; i++) {
+			acc += taps[i] * handleHistory[window + i];
+		}
+		long rounded = Math.round(acc);
+		handleOutput = (short) (rounded > Short.MAX_VALUE ? Short.MAX_VALUE : rounded < Short.MIN_VALUE ? Short.MIN_VALUE : rounded);
+		return true;
+	}
+
+	/**
+	 * @return the decimated sample produced by the last call to {@link #add(short)} that returned true
+	 */
+	short output() {
+		return handleOutput;
+	}
+
+	/**
+	 * Clears the filter history, as if no sample had been added yet.
+	 */
+	void reset() {
+		Arrays.fill(handleHistory, 0);
+		handleRingStart = 0;
+		handlePhase = 0;
+		handleOutput = 0;
+	}
+}
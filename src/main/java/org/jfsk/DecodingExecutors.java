@@ -0,0 +1,67 @@
+package org.jfsk;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Creates the thread per stream executors of {@link FskDecodingService}. Uses virtual threads 
+ * when the library is built with the {@code java21} profile and runs on Java 21 or later, and a 
+ * cached pool of platform threads otherwise.
+ */
+final class DecodingExecutors {
+	private static final Logger logger = Logger.getLogger(DecodingExecutors.class.getName());
+	
+	private static final Method VIRTUAL_THREAD_EXECUTOR = findVirtualThreadExecutor();
+
+	private DecodingExecutors() {
+	}
+
+	/**
+	 * @return true if per stream executors run on virtual threads
+	 */
+	static boolean isUsingVirtualThreads() {
+		return VIRTUAL_THREAD_EXECUTOR != null;
+	}
+
+	/**
+	 * @return an executor that starts a new thread for every task
+	 */
+	static ExecutorService newPerStreamExecutor() {
+		if (VIRTUAL_THREAD_EXECUTOR != null) {
+			try {
+				return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invoke(null);
+			} catch (Exception e) {
+				logger.log(Level.WARNING, "Virtual thread executor could not be created, using platform threads", e);
+			}
+		}
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable task) {
+				Thread thread = new Thread(task, "fsk-decoder-" + count.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static Method findVirtualThreadExecutor() {
+		try {
+			Class<?> type = Class.forName("org.jfsk.VirtualThreadExecutors");
+			Method method = type.getDeclaredMethod("newPerStreamExecutor");
+			method.setAccessible(true);
+			return method;
+		} catch (Exception e) {
+			logger.log(Level.FINE, "Virtual threads not available, using platform threads", e);
+		} catch (LinkageError e) {
+			logger.log(Level.FINE, "Virtual threads not available, using platform threads", e);
+		}
+		return null;
+	}
+}
@@ -0,0 +1,69 @@
+package org.jfsk;
+
+import java.util.Arrays;
+
+/**
+ * Correlator that works entirely in integer arithmetic. The window holds the raw 16-bit samples, 
+ * the sine and cosine tables are Q15, and the four dot products are accumulated in 64 bits.
+ * 
+ * Before the energies are compared, the sums are shifted right by just enough bits for their 
+ * squares to fit in a long. The shift depends only on the window size, so the comparison keeps 
+ * as much precision as the window allows and never overflows. The tables are computed with 
+ * {@link StrictMath}, so results are bit-exact across JVMs and platforms.
+ */
+class FixedPointCorrelator implements FskCorrelator {
+	private final int markSinTable[];
+	private final int markCosTable[];
+	private final int spaceSinTable[];
+	private final int spaceCosTable[];
+	private final int handleBuffer[];
+	private final int handleCorrSize;
+	private final int accumulatorShift;
+	private int handleRingStart = 0;
+
+	FixedPointCorrelator(CorrelatorTables tables) {
+		markSinTable = tables.q15Correlates[0];
+		markCosTable = tables.q15Correlates[1];
+		spaceSinTable = tables.q15Correlates[2];
+		spaceCosTable = tables.q15Correlates[3];
+		handleCorrSize = markSinTable.length;
+		handleBuffer = new int[handleCorrSize];
+		// each product is below 2^30, so a sum of N products shifted by more than log2(N) bits stays below 2^30
+		accumulatorShift = 32 - Integer.numberOfLeadingZeros(handleCorrSize);
+	}
+
+	@Override
+	public boolean isMark(short sample) {
+		long markSin = 0, markCos = 0, spaceSin = 0, spaceCos = 0;
+		int i, j;
+		handleBuffer[handleRingStart++] = sample;
+		if (handleRingStart >= handleCorrSize) {
+			handleRingStart = 0;
+		}
+
+		j = handleRingStart;
+		for (i = 0; i < handleCorrSize; i++) {
+			if (j >= handleCorrSize) {
+				j = 0;
+			}
+			int val = handleBuffer[j];
+			markSin += markSinTable[i] * val;
+			markCos += markCosTable[i] * val;
+			spaceSin += spaceSinTable[i] * val;
+			spaceCos += spaceCosTable[i] * val;
+			j++;
+		}
+
+		markSin >>= accumulatorShift;
+		markCos >>= accumulatorShift;
+		spaceSin >>= accumulatorShift;
+		spaceCos >>= accumulatorShift;
+		return (markSin * markSin + markCos * markCos > spaceSin * spaceSin + spaceCos * spaceCos);
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(handleBuffer, 0);
+		handleRingStart = 0;
+	}
+}
@@ -0,0 +1,58 @@
+package org.jfsk;
+
+import java.util.Arrays;
+
+/**
+ * Correlator that computes the same dot products as {@link BruteForceCorrelator} in single 
+ * precision. 24-bit mantissas are plenty for 16-bit samples over windows of a few hundred samples, 
+ * and the tables and window take half the cache space of the double precision engines.
+ * 
+ * The window is kept twice over in a buffer of double length, so it is always one contiguous 
+ * slice and the inner loop has no wrap-around check.
+ */
+class FloatCorrelator implements FskCorrelator {
+	private final float markSinTable[];
+	private final float markCosTable[];
+	private final float spaceSinTable[];
+	private final float spaceCosTable[];
+	private final float handleBuffer[];
+	private final int handleCorrSize;
+	private int handleRingStart = 0;
+
+	FloatCorrelator(CorrelatorTables tables) {
+		markSinTable = tables.floatCorrelates[0];
+		markCosTable = tables.floatCorrelates[1];
+		spaceSinTable = tables.floatCorrelates[2];
+		spaceCosTable = tables.floatCorrelates[3];
+		handleCorrSize = markSinTable.length;
+		handleBuffer = new float[handleCorrSize * 2];
+	}
+
+	@Override
+	public boolean isMark(short sample) {
+		float val = sample / 32768f;
+		handleBuffer[handleRingStart] = val;
+		handleBuffer[handleRingStart + handleCorrSize] = val;
+		if (++handleRingStart >= handleCorrSize) {
+			handleRingStart = 0;
+		}
+
+		float markSin = 0, markCos = 0, spaceSin = 0, spaceCos = 0;
+		int window = handleRingStart;
+		for (int i = 0; i < handleCorrSize; i++) {
+			float v = handleBuffer[window + i];
+			markSin += markSinTable[i] * v;
+			markCos += markCosTable[i] * v;
+			spaceSin += spaceSinTable[i] * v;
+			spaceCos += spaceCosTable[i] * v;
+		}
+
+		return (markSin * markSin + markCos * markCos > spaceSin * spaceSin + spaceCos * spaceCos);
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(handleBuffer, 0);
+		handleRingStart = 0;
+	}
+}
@@ -0,0 +1,16 @@
+package org.jfsk;
+
+/**
+ * Receives frames from an {@link FskDecoder} as they complete.
+ * 
+ * @see FskDecoder#setFrameListener(FrameListener)
+ */
+public interface FrameListener {
+
+	/**
+	 * Called on the decoding thread each time a frame completes.
+	 * 
+	 * @param frame decoded frame
+	 */
+	void onFrame(FskFrame frame);
+}
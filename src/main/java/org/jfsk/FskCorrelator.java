@@ -0,0 +1,24 @@
+package org.jfsk;
+
+/**
+ * Correlates the incoming samples against the mark and space tones of the selected modem.
+ * 
+ * Implementations keep their own window of the most recent samples and are not thread safe.
+ * 
+ * @see CorrelatorEngine
+ */
+interface FskCorrelator {
+
+	/**
+	 * Adds a sample to the correlation window.
+	 * 
+	 * @param sample 16-bit PCM sample
+	 * @return true if the mark tone has more energy than the space tone over the current window
+	 */
+	boolean isMark(short sample);
+
+	/**
+	 * Clears the correlation window, as if no sample had been added yet.
+	 */
+	void reset();
+}
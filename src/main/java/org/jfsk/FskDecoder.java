@@ -1,323 +1,1082 @@
-package org.jfsk;
-
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.util.logging.Level;
-import java.util.logging.Logger;
-
-/**
- * 
- * @author Anuradha Chowdhary
- * @author info@achowdhary.com
- *
- * <b>FSK Decoder</b> implementation in Java. This implementation provides method to convert data 
- * encoded in raw, uncompressed audio using FSK Decoder.
- * 
- * Refer to two methods that take raw audio data as PCM File or PCM Input Stream and returns 
- * decoded data in bytes.
- * 
- * {@link #decode(File)}
- * {@link #decode(InputStream)}
- * 
- * Here is example use:
- *<pre> {@code
- *  FskDecoder fskDecoder = new FskDecoder();
- *  File pcmFile = new File("/path/to/file.pcm");
- *  decodedData = fskDecoder.decode(pcmFile);
- * }</pre>
- */
-
-public class FskDecoder {
-	private static final Logger logger = Logger.getLogger(FskDecoder.class.getName());
-	
-	private static final int  SELECTED_FSK = 4;
-	private static final int MAX_DATA_SIZE=256;
-	
-	private static final double MATH_PI        = 3.14159265358979323846;	
-	private static final int FSK_STATE_CHANSEIZE = 0;
-	private static final int FSK_STATE_CARRIERSIG = 1;
-	private static final int FSK_STATE_DATA = 2;
-	private static final int FSK_STATE_SYNC = 3;
-    
-	private static final int SAMPLE_RATE = 8000;
-	private static final short SYNC_SEQUENCE  = (short)0xAB4D; // 1010 1011 0100 1101
-	
-	static class FskModemDefinition {
-		 int freqSpace;             // Frequency of the 0 bit      
-		 int freqMark;              // Frequency of the 1 bit         
-		 int baudRate;              // baud rate for the modem
-		
-		 public FskModemDefinition(int freqSpace, int freqMark, int baudRate) {
-			this.freqMark = freqMark;
-			this.freqSpace = freqSpace;
-			this.baudRate = baudRate;
-		}
-	};
-	
-	/**
-	 * Defines some standard modem definitions. If using a different 
-	 * definition, add modem definition here.
-	 */
-	
-	private static final FskModemDefinition FSK_MODEM_DEFINITIONS[] = 
-		{
-		 new FskModemDefinition(1700, 1300, 600),   // FSK_V23_FORWARD_MODE1 Maximum 600 bps for long haul         
-		 new FskModemDefinition(2100, 1300, 1200),  // FSK_V23_FORWARD_MODE2 Standard 1200 bps V.23               
-		 new FskModemDefinition(450, 390, 75),      // FSK_V23_BACKWARD 75 bps return path for V.23                   
-		 new FskModemDefinition(2400, 1200, 500),   // FSK_BELL202  Bell 202 half-duplex 1200 bps                   
-		 new FskModemDefinition(2000, 1000, 500 )   // FSK Custom_Example */   
-		};
-	
-	public static char[] CHAR_MAP = {0,1,2,3,4,5,6,7,8,9,'A','B','C','D','E','F',};
-
-	//Member variables
-	private int tempIndex = 0;
-	private int prevChar;
-	private boolean skippingLeadingZeroes = true;
-	private double normalizedValue;
-	private int trailingZeroes = 0;
-	private boolean running = true;
-	private int handleDownsamplingCount = 1;
-	private int handleCorrSize = SAMPLE_RATE / handleDownsamplingCount / FSK_MODEM_DEFINITIONS[SELECTED_FSK].freqMark;
-	private double handleCorrelates[][] ; 
-	private double handleBuffer[];
-	private int handleRingStart = 0;
-	private int handleState;
-	private double handleCellPos;              // bit cell position
-	private double handleCellAdj;
-	private  boolean handlePreviousBit;        // previous bit (for detecting a transition to sync-up cell position) 
-	private boolean handleCurrentBit;          // current bit 
-	private boolean handleLastBit;
-	private int handleConscutiveStateBits;     // number of bits in a row that matches the pattern for the current state 
-	private int handleNibbleCount;
-	private int handleNibble;
-	private int handleCharCount;
-	private int handleDataSize;
-	private short handleSyncData;
-	private int handleTempByte;
-	
-	private byte[] decodedBytes;
-	private int [] outputBuffer = new int[MAX_DATA_SIZE];
-	private int length;
-	
-	public FskDecoder() {
-		double phiMark = 2. * MATH_PI / ((double) SAMPLE_RATE / (double) handleDownsamplingCount / (double) FSK_MODEM_DEFINITIONS[SELECTED_FSK].freqMark);
-		double phiSpace = 2. * MATH_PI / ((double) SAMPLE_RATE / (double) handleDownsamplingCount / (double) FSK_MODEM_DEFINITIONS[SELECTED_FSK].freqSpace);
-		
-		handleCorrelates = new double[4][handleCorrSize];
-	     for (int i = 0; i < handleCorrSize; i++) {
-	    	 handleCorrelates[0][i] = Math.sin(phiMark * (double) i);
-	    	 handleCorrelates[1][i] = Math.cos(phiMark * (double) i);
-	    	 handleCorrelates[2][i] = Math.sin(phiSpace * (double) i);
-	    	 handleCorrelates[3][i] = Math.cos(phiSpace * (double) i);
-	     }
-   
-	     handleBuffer = new double[handleCorrSize];
-	     handleRingStart = 0;
-
-	     handleCellPos = 0;
-	     handleCellAdj = FSK_MODEM_DEFINITIONS[SELECTED_FSK].baudRate / (double) SAMPLE_RATE * (double) handleDownsamplingCount;
-	}
-	
-	/**
-	 * Decode the data encoded into given PCM file.
-	 * 
-	 * @param pcmFile FSK encoded data in PCM File.
-	 * @return decoded data bytes
-	 * @throws Exception
-	 */
-	public byte[] decode(File pcmFile) throws Exception{
-		FileInputStream pcmReader =new FileInputStream(pcmFile);
-		byte[] decodedData = decode(pcmReader);;
-		pcmReader.close();
-		return decodedData;
-	}
-	
-	/**
-	 * Decode the data encoded into given PCM reader.
-	 * 
-	 * @param pcmReader FSK encoded data reader.
-	 * @return decoded data bytes
-	 * @throws Exception
-	 */
-    public byte[] decode(InputStream pcmReader) throws Exception{
-		int dataByte = pcmReader.read();
-		while(dataByte != -1) {
-			if (running) {
-				short sample;
-				if (tempIndex == 0) {
-					prevChar = dataByte;
-					tempIndex++;
-					dataByte = pcmReader.read();
-					continue;
-				} else {
-					sample = (short)((dataByte << 8) | prevChar);
-					tempIndex = 0;
-				}
-				
-				if (skippingLeadingZeroes) {
-					if (sample != 0) skippingLeadingZeroes = false;
-				}
-				
-				normalizedValue = (double) sample / 32768;
-				if (!skippingLeadingZeroes) {
-					if (sample == 0)trailingZeroes++;
-					else trailingZeroes = 0;
-					
-					if (trailingZeroes == 1000) {
-						logger.log(Level.SEVERE,"Existing Trailing Zeros detected");
-						running = false;
-						dataByte = pcmReader.read();
-						continue;
-					}
-					
-					int dataCount = dspFskSample(normalizedValue);
-					if (dataCount != 0) break; 
-				}
-			}
-			dataByte = pcmReader.read();
-		}
-		if(length>0 && length <=MAX_DATA_SIZE){
-			ByteArrayOutputStream bout = new ByteArrayOutputStream();
-			for(int i =0; i < length; i++) {
-				bout.write(outputBuffer[i]);
-			}
-			decodedBytes = bout.toByteArray();
-		}	
-		return decodedBytes;
-	}
-    	
-	private int dspFskSample(double normalizedSample) {
-		double val = 234.234;
-		double factors[] = new double[4];
-		int i, j;
-		handleBuffer[handleRingStart++] = normalizedSample;
-		if (handleRingStart >= handleCorrSize) {
-			handleRingStart = 0;
-		}
-		
-		factors[0] = factors[1] = factors[2] = factors[3] = 0; 
-																 
-		j = handleRingStart;
-		for (i = 0; i < handleCorrSize; i++) {
-			if (j >= handleCorrSize) {
-				j = 0;
-			}
-			val = handleBuffer[j];
-			factors[0] += handleCorrelates[0][i] * val;
-			factors[1] += handleCorrelates[1][i] * val;
-			factors[2] += handleCorrelates[2][i] * val;
-			factors[3] += handleCorrelates[3][i] * val;
-			j++;
-		}
-
-		handlePreviousBit = handleCurrentBit;
-		handleCurrentBit = (factors[0] * factors[0] + factors[1] * factors[1] > factors[2]* factors[2] + factors[3] * factors[3]);
-
-		if (handlePreviousBit != handleCurrentBit) {
-			handleCellPos = 0.5; 
-		}
-		handleCellPos += handleCellAdj; 
-
-		if (handleCellPos > 1.0) {
-			handleCellPos -= 1.0;
-
-			switch (handleState) {
-			case FSK_STATE_DATA: {
-				int fourBnibble = 0;
-				handleNibble = handleNibble | ((handleCurrentBit ? 0 : 1) & 0xff);
-				handleNibbleCount++;
-				if (handleNibbleCount > 5) {
-					switch (handleNibble) {
-						case 0x12: fourBnibble = 0x00;  break;
-						case 0x13: fourBnibble = 0x01; 	break;
-						case 0x14: fourBnibble = 0x02;  break;
-						case 0x15: fourBnibble = 0x03;	break;
-						case 0x16: fourBnibble = 0x04; 	break;
-						case 0x19: fourBnibble = 0x05;	break;
-						case 0x1A: fourBnibble = 0x06; 	break;
-						case 0x23: fourBnibble = 0x07;  break;
-						case 0x24: fourBnibble = 0x08;  break;
-						case 0x25: fourBnibble = 0x09;  break;
-						case 0x26: fourBnibble = 0x0A;  break;
-						case 0x29: fourBnibble = 0x0B;  break;
-						case 0x2A: fourBnibble = 0x0C; 	break;
-						case 0x2B: fourBnibble = 0x0D; 	break;
-						case 0x2C: fourBnibble = 0x0E;  break;
-						case 0x2D: fourBnibble = 0x0F;  break;
-						default: logger.log(Level.SEVERE,"Error : " +handleNibble);break;
-				    }
-
-					if (handleCharCount < 4) {
-						if (((handleCharCount) & 0x1) == 0) {
-							handleTempByte = ((fourBnibble << 4) & 0xF0);
-						} else {
-							handleTempByte = (handleTempByte | (fourBnibble & 0xF));
-							outputBuffer[handleCharCount / 2] = handleTempByte;
-						}
-						if (handleCharCount == 3) {
-							handleDataSize = ((outputBuffer[0] << 8) & 0xff00)| (outputBuffer[1] & 0x00ff);
-							handleDataSize = handleDataSize * 2 + 4;
-							logger.log(Level.FINE, "handleDataSize="+handleDataSize);
-							if(handleDataSize!=292){
-								handleDataSize = 288;
-							}
-							length = handleDataSize/2;
-						}
-					} else if (handleCharCount < handleDataSize) {
-						if (((handleCharCount) & 0x1) == 0) {
-							handleTempByte = ((fourBnibble << 4) & 0xF0);
-						} else {
-							handleTempByte = handleTempByte | (fourBnibble & 0xF);
-							outputBuffer[handleCharCount / 2] = handleTempByte;
-						}
-					}
-
-					if (handleCharCount > 4 && handleCharCount >= handleDataSize) {
-						logger.log(Level.FINE,"Processing done");
-						running = false;
-						return handleDataSize / 2;
-					}
-					handleCharCount++;
-					handleNibbleCount = 0;
-					handleNibble = 0;
-				} else {
-					handleNibble = (handleNibble << 1);
-				}
-
-			}break;
-			
-			case FSK_STATE_CHANSEIZE:{
-				if (handleLastBit != handleCurrentBit)handleConscutiveStateBits++;
-				else handleConscutiveStateBits = 0;
-
-				if (handleConscutiveStateBits > 30) {
-					handleState = FSK_STATE_SYNC;
-					handleConscutiveStateBits = 0;
-				}
-			}break;
-
-			case FSK_STATE_SYNC:{
-				handleSyncData = (short) (handleSyncData << 1);
-				handleSyncData |= (handleCurrentBit ? 0 : 1);
-
-				if (handleSyncData == SYNC_SEQUENCE) handleState = FSK_STATE_DATA;
-			}break;
-
-			case FSK_STATE_CARRIERSIG: { 
-				if (handleCurrentBit) handleConscutiveStateBits++;
-				else handleConscutiveStateBits = 0;
-
-				if (handleConscutiveStateBits > 15) {
-					handleState = FSK_STATE_DATA;
-					handleConscutiveStateBits = 0;
-				}
-			}break;
-			}
-			handleLastBit = handleCurrentBit;
-		}
-		return 0;
-	}	
-}
+package org.jfsk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 
+ * @author Anuradha Chowdhary
+ * @author info@achowdhary.com
+ *
+ * <b>FSK Decoder</b> implementation in Java. This implementation provides method to convert data 
+ * encoded in raw, uncompressed audio using FSK Decoder.
+ * 
+ * Refer to methods that take raw audio data as PCM File, PCM Input Stream or PCM file Path and return 
+ * decoded data in bytes.
+ * 
+ * {@link #decode(File)}
+ * {@link #decode(InputStream)}
+ * {@link #decode(Path)}
+ * 
+ * Recordings holding several messages can be decoded in one pass with {@link #decodeFrames(InputStream)}, 
+ * or pushed to the decoder as they arrive with {@link #feed(short[], int, int)}.
+ * 
+ * Here is example use:
+ *<pre> {@code
+ *  FskDecoder fskDecoder = new FskDecoder();
+ *  File pcmFile = new File("/path/to/file.pcm");
+ *  decodedData = fskDecoder.decode(pcmFile);
+ * }</pre>
+ */
+
+public class FskDecoder {
+	private static final Logger logger = Logger.getLogger(FskDecoder.class.getName());
+	
+	/** Largest payload, in bytes, accepted from a length header unless set otherwise. */
+	static final int DEFAULT_MAX_DATA_SIZE = 256;
+	private static final int MAX_LENGTH_HEADER = 0xFFFF;
+	static final int READ_BUFFER_SIZE = 16384;
+	private static final int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+	
+	private static final int FSK_STATE_CHANSEIZE = 0;
+	private static final int FSK_STATE_CARRIERSIG = 1;
+	private static final int FSK_STATE_DATA = 2;
+	private static final int FSK_STATE_SYNC = 3;
+    
+	static final int SAMPLE_RATE = 8000;
+	static final int SILENCE_SAMPLES = 1000;   // zero samples ending a recording, at SAMPLE_RATE
+	static final int MIN_SAMPLES_PER_TONE_CYCLE = 8;
+	static final int MIN_SAMPLES_PER_BIT = 16;
+	static final short SYNC_SEQUENCE  = (short)0xAB4D; // 1010 1011 0100 1101
+	
+	/** 4B/6B line code: the 6-bit code transmitted for each nibble value, indexed by nibble. */
+	static final int SIX_B_CODES[] = {0x12, 0x13, 0x14, 0x15, 0x16, 0x19, 0x1A, 0x23, 0x24, 0x25, 0x26, 0x29, 0x2A, 0x2B, 0x2C, 0x2D};
+	
+	/** Returned by {@link #sixBToNibble(int)} for a 6-bit code that is not in {@link #SIX_B_CODES}. */
+	static final int INVALID_NIBBLE = -1;
+	
+	/** Inverse of {@link #SIX_B_CODES}: the nibble for each of the 64 possible 6-bit codes. */
+	private static final byte NIBBLE_TABLE[] = new byte[64];
+	
+	static {
+		Arrays.fill(NIBBLE_TABLE, (byte) INVALID_NIBBLE);
+		for (int nibble = 0; nibble < SIX_B_CODES.length; nibble++) {
+			NIBBLE_TABLE[SIX_B_CODES[nibble]] = (byte) nibble;
+		}
+	}
+	
+	static class FskModemDefinition {
+		 int freqSpace;             // Frequency of the 0 bit      
+		 int freqMark;              // Frequency of the 1 bit         
+		 int baudRate;              // baud rate for the modem
+		
+		 public FskModemDefinition(int freqSpace, int freqMark, int baudRate) {
+			this.freqMark = freqMark;
+			this.freqSpace = freqSpace;
+			this.baudRate = baudRate;
+		}
+	};
+	
+	/**
+	 * Defines some standard modem definitions, exposed as {@link FskModemProfile} constants. 
+	 * If using a different definition, create a {@link FskModemProfile} for it.
+	 */
+	
+	static final FskModemDefinition FSK_MODEM_DEFINITIONS[] = 
+		{
+		 new FskModemDefinition(1700, 1300, 600),   // FSK_V23_FORWARD_MODE1 Maximum 600 bps for long haul         
+		 new FskModemDefinition(2100, 1300, 1200),  // FSK_V23_FORWARD_MODE2 Standard 1200 bps V.23               
+		 new FskModemDefinition(450, 390, 75),      // FSK_V23_BACKWARD 75 bps return path for V.23                   
+		 new FskModemDefinition(2400, 1200, 500),   // FSK_BELL202  Bell 202 half-duplex 1200 bps                   
+		 new FskModemDefinition(2000, 1000, 500 )   // FSK Custom_Example */   
+		};
+	
+	public static char[] CHAR_MAP = {0,1,2,3,4,5,6,7,8,9,'A','B','C','D','E','F',};
+
+	//Member variables
+	private int tempIndex = 0;
+	private int prevChar;
+	private boolean skippingLeadingZeroes = true;
+	private int trailingZeroes = 0;
+	private final int trailingZeroesLimit;     // SILENCE_SAMPLES scaled to the sample rate of the profile
+	private boolean running = true;
+	private final int handleDownsamplingCount;
+	private final FskModemProfile profile;
+	private final CorrelatorEngine engine;
+	private final FskCorrelator correlator;
+	private final Decimator decimator;         // null when samples are correlated at the input rate
+	private int handleState;
+	private double handleCellPos;              // bit cell position
+	private double handleCellAdj;
+	private  boolean handlePreviousBit;        // previous bit (for detecting a transition to sync-up cell position) 
+	private boolean handleCurrentBit;          // current bit 
+	private boolean handleLastBit;
+	private int handleConscutiveStateBits;     // number of bits in a row that matches the pattern for the current state 
+	private int handleNibbleCount;
+	private int handleNibble;
+	private int handleCharCount;
+	private int handleDataSize;                // length header while it is read, then number of nibbles in the frame
+	private short handleSyncData;
+	private int handleTempByte;
+	private int handleInvalidCodes;            // invalid 6-bit codes received in the current frame
+	
+	private int maxInvalidCodes = Integer.MAX_VALUE;
+	private int invalidCodeCount;              // invalid 6-bit codes in the last completed frame
+	
+	private ByteBuffer handleFrame;            // bytes of the current frame, set up once its length header is read
+	private int handleFrameBase;               // index of the first byte of the current frame in handleFrame
+	
+	private ByteBuffer frameTarget;            // caller buffer frames are decoded into, or null to allocate them
+	private boolean frameOverflow;             // a frame did not fit into frameTarget
+	private boolean frameReady;                // a frame completed and has not been returned yet
+	private boolean frameDropped;              // a frame was dropped since the last run of silence
+	
+	private int maxDataSize = DEFAULT_MAX_DATA_SIZE;
+	private int length;
+	private long samplePosition;               // number of samples seen since construction or reset
+	private long handleFrameOffset;            // sample offset at which the current frame was synchronized
+	
+	private FrameListener frameListener;       // when set, decoding continues after each frame
+	
+	private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+	private final short[] sampleBuffer = new short[READ_BUFFER_SIZE / 2 + 1];
+	
+	/**
+	 * Creates a decoder for {@link FskModemProfile#CUSTOM_EXAMPLE}.
+	 */
+	public FskDecoder() {
+		this(FskModemProfile.CUSTOM_EXAMPLE);
+	}
+	
+	/**
+	 * Creates a decoder for {@link FskModemProfile#CUSTOM_EXAMPLE} that correlates samples with 
+	 * the given engine.
+	 * 
+	 * @param engine correlator engine to use
+	 */
+	public FskDecoder(CorrelatorEngine engine) {
+		this(FskModemProfile.CUSTOM_EXAMPLE, engine);
+	}
+	
+	/**
+	 * Creates a decoder for the given modem profile.
+	 * 
+	 * @param profile modem and sample rate of the PCM data
+	 */
+	public FskDecoder(FskModemProfile profile) {
+		this(profile, CorrelatorEngine.BRUTE_FORCE);
+	}
+	
+	/**
+	 * Creates a decoder for the given modem profile that correlates samples with the given engine.
+	 * 
+	 * @param profile modem and sample rate of the PCM data
+	 * @param engine correlator engine to use
+	 */
+	public FskDecoder(FskModemProfile profile, CorrelatorEngine engine) {
+		this.profile = profile;
+		this.engine = engine;
+		handleDownsamplingCount = downsamplingCount(profile);
+		trailingZeroesLimit = (int) ((long) SILENCE_SAMPLES * profile.getSampleRate() / SAMPLE_RATE);
+		CorrelatorTables tables = CorrelatorTables.get(profile.getFreqMark(), profile.getFreqSpace(), profile.getSampleRate(), handleDownsamplingCount);
+		correlator = engine.create(tables);
+		decimator = tables.decimationTaps != null ? new Decimator(tables.decimationTaps, handleDownsamplingCount) : null;
+
+		handleCellPos = 0;
+		handleCellAdj = profile.getBaudRate() / (double) profile.getSampleRate() * (double) handleDownsamplingCount;
+	}
+	
+	/**
+	 * Creates a decoder without a correlator, which only frames the bit decisions handed to it by 
+	 * {@link #processDecision(boolean, long)}. Used by demodulators that correlate samples themselves, 
+	 * such as {@link MultiProfileFskDecoder}.
+	 * 
+	 * @param profile modem and sample rate of the PCM data
+	 * @param downsamplingCount number of input samples per bit decision
+	 */
+	FskDecoder(FskModemProfile profile, int downsamplingCount) {
+		this.profile = profile;
+		this.engine = null;
+		handleDownsamplingCount = downsamplingCount;
+		trailingZeroesLimit = (int) ((long) SILENCE_SAMPLES * profile.getSampleRate() / SAMPLE_RATE);
+		correlator = null;
+		decimator = null;
+
+		handleCellPos = 0;
+		handleCellAdj = profile.getBaudRate() / (double) profile.getSampleRate() * (double) handleDownsamplingCount;
+	}
+	
+	/**
+	 * Picks the largest decimation factor that keeps at least {@value #MIN_SAMPLES_PER_TONE_CYCLE} 
+	 * samples per cycle of the highest tone and {@value #MIN_SAMPLES_PER_BIT} samples per bit. 
+	 * Profiles sampled near the rate their tones need are not decimated.
+	 * 
+	 * @return number of input samples per correlated sample
+	 */
+	static int downsamplingCount(FskModemProfile profile) {
+		int maxTone = Math.max(profile.getFreqMark(), profile.getFreqSpace());
+		int minRate = Math.max(maxTone * MIN_SAMPLES_PER_TONE_CYCLE, profile.getBaudRate() * MIN_SAMPLES_PER_BIT);
+		return Math.max(1, profile.getSampleRate() / minRate);
+	}
+	
+	/**
+	 * @return modem profile this decoder was created for
+	 */
+	public FskModemProfile getProfile() {
+		return profile;
+	}
+	
+	/**
+	 * @return correlator engine this decoder was created with, or null for a decoder that only 
+	 * frames bit decisions
+	 */
+	public CorrelatorEngine getEngine() {
+		return engine;
+	}
+	
+	/**
+	 * Restores the decoder to the state it had right after construction, so it can decode another 
+	 * message. Buffers and correlator tables are kept and reused. The frame listener is removed and 
+	 * the invalid code and data size limits are set back to their defaults.
+	 */
+	public void reset() {
+		tempIndex = 0;
+		prevChar = 0;
+		skippingLeadingZeroes = true;
+		trailingZeroes = 0;
+		running = true;
+		if (correlator != null) correlator.reset();
+		if (decimator != null) decimator.reset();
+		handleCellPos = 0;
+		handlePreviousBit = false;
+		handleCurrentBit = false;
+		handleLastBit = false;
+		restartFraming();
+		frameOverflow = false;
+		frameDropped = false;
+		invalidCodeCount = 0;
+		maxInvalidCodes = Integer.MAX_VALUE;
+		maxDataSize = DEFAULT_MAX_DATA_SIZE;
+		samplePosition = 0;
+		frameListener = null;
+	}
+	
+	/**
+	 * Drops any partially decoded frame and waits for the next channel seizure. The correlator 
+	 * and bit cell timing are left untouched.
+	 */
+	void restartFraming() {
+		handleState = FSK_STATE_CHANSEIZE;
+		handleConscutiveStateBits = 0;
+		handleNibbleCount = 0;
+		handleNibble = 0;
+		handleCharCount = 0;
+		handleDataSize = 0;
+		handleSyncData = 0;
+		handleTempByte = 0;
+		handleInvalidCodes = 0;
+		handleFrameOffset = 0;
+		handleFrame = null;
+		length = 0;
+		frameReady = false;
+	}
+	
+	/**
+	 * Drops a frame taken for a false sync. The silence that follows does not stop the decoder, so 
+	 * a single frame decode goes on to the next frame.
+	 */
+	private void dropFrame() {
+		restartFraming();
+		frameDropped = true;
+	}
+	
+	/**
+	 * Sets how many invalid 6-bit codes a frame may hold before it is rejected. Invalid codes are 
+	 * decoded as nibble 0. A rejected frame is dropped and decoding resumes at the next channel 
+	 * seizure. By default no frame is rejected; the count is reported by {@link #getInvalidCodeCount()} 
+	 * and {@link FskFrame#getInvalidCodeCount()} instead.
+	 * 
+	 * @param maxInvalidCodes maximum number of invalid codes in an accepted frame, 0 to reject any 
+	 * frame with an invalid code
+	 */
+	public void setMaxInvalidCodes(int maxInvalidCodes) {
+		if (maxInvalidCodes < 0) {
+			throw new IllegalArgumentException("maxInvalidCodes must not be negative: " + maxInvalidCodes);
+		}
+		this.maxInvalidCodes = maxInvalidCodes;
+	}
+	
+	/**
+	 * Sets the largest payload accepted from the length header of a frame. A frame announcing more 
+	 * is treated as a false sync: it is dropped and decoding resumes at the next channel seizure. 
+	 * Buffers are sized from the header of each frame, so raising the limit costs nothing until a 
+	 * large frame arrives.
+	 * 
+	 * @param maxDataSize largest payload in bytes, excluding the 2-byte length header, at most 65535. 
+	 * Defaults to {@value #DEFAULT_MAX_DATA_SIZE}.
+	 */
+	public void setMaxDataSize(int maxDataSize) {
+		if (maxDataSize < 0 || maxDataSize > MAX_LENGTH_HEADER) {
+			throw new IllegalArgumentException("maxDataSize must be between 0 and " + MAX_LENGTH_HEADER + ": " + maxDataSize);
+		}
+		this.maxDataSize = maxDataSize;
+	}
+	
+	/**
+	 * @return number of invalid 6-bit codes in the last frame decoded, 0 if it was received cleanly
+	 */
+	public int getInvalidCodeCount() {
+		return invalidCodeCount;
+	}
+	
+	/**
+	 * Decode the data encoded into given PCM file.
+	 * 
+	 * @param pcmFile FSK encoded data in PCM File.
+	 * @return decoded data bytes, or null if the input ended before a frame completed
+	 * @throws Exception
+	 */
+	public byte[] decode(File pcmFile) throws Exception{
+		FileInputStream pcmReader = new FileInputStream(pcmFile);
+		try {
+			return decode(pcmReader);
+		} finally {
+			pcmReader.close();
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given PCM reader.
+	 * 
+	 * The reader is consumed in blocks of {@value #READ_BUFFER_SIZE} bytes, so it does not
+	 * need to be buffered by the caller. Reading stops once a frame has been decoded, but
+	 * the reader may have been advanced past the end of that frame. A frame listener, if set, is 
+	 * not called. A decoder stopped by an earlier call goes back to waiting for a channel seizure, 
+	 * so each call returns a new frame.
+	 * 
+	 * @param pcmReader FSK encoded data reader.
+	 * @return decoded data bytes, or null if the input ended before a frame completed
+	 * @throws Exception
+	 */
+	public byte[] decode(InputStream pcmReader) throws Exception{
+		FrameListener previousListener = frameListener;
+		frameListener = null;
+		try {
+			readStream(pcmReader);
+			return collectDecodedBytes();
+		} finally {
+			frameListener = previousListener;
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given PCM file by memory mapping it.
+	 * 
+	 * @param pcmFile FSK encoded data in PCM File.
+	 * @return decoded data bytes, or null if the input ended before a frame completed
+	 * @throws Exception
+	 * @see #decodeMapped(FileChannel)
+	 */
+	public byte[] decode(Path pcmFile) throws Exception{
+		FileChannel channel = FileChannel.open(pcmFile, StandardOpenOption.READ);
+		try {
+			return decodeMapped(channel);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given PCM file channel. The channel is mapped read-only in 
+	 * windows of at most {@value #MAPPED_WINDOW_SIZE} bytes, starting at position 0, and samples 
+	 * are read straight from a little-endian view of the mapping. Repeated decodes of the same 
+	 * file are served from the OS page cache. The channel is not closed.
+	 * 
+	 * @param channel FSK encoded data channel.
+	 * @return decoded data bytes, or null if the input ended before a frame completed
+	 * @throws Exception
+	 */
+	public byte[] decodeMapped(FileChannel channel) throws Exception{
+		FrameListener previousListener = frameListener;
+		frameListener = null;
+		try {
+			readMapped(channel);
+			return collectDecodedBytes();
+		} finally {
+			frameListener = previousListener;
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given WAV or AIFF file. The sample format is read from the 
+	 * file header, see {@link PcmFormat}, and the first channel is decoded. 
+	 * 
+	 * @param audioFile FSK encoded data in a WAV or AIFF file.
+	 * @return decoded data bytes, or null if the input ended before a frame completed
+	 * @throws IllegalArgumentException if the sample rate of the file is not the one of the profile
+	 * @throws Exception
+	 * @see #decodeAudio(InputStream)
+	 */
+	public byte[] decodeAudio(File audioFile) throws Exception{
+		FileInputStream audioReader = new FileInputStream(audioFile);
+		try {
+			return decodeAudio(audioReader);
+		} finally {
+			audioReader.close();
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given WAV or AIFF reader. The header is parsed from the reader, 
+	 * which is then consumed in blocks of {@value #READ_BUFFER_SIZE} bytes up to the end of the 
+	 * sample data. Samples are converted straight from the block into the demodulator.
+	 * 
+	 * @param audioReader FSK encoded data reader, positioned at the start of the file.
+	 * @return decoded data bytes, or null if the input ended before a frame completed
+	 * @throws IllegalArgumentException if the sample rate of the file is not the one of the profile
+	 * @throws Exception
+	 */
+	public byte[] decodeAudio(InputStream audioReader) throws Exception{
+		PcmFormat format = checkFormat(PcmFormat.read(audioReader));
+		FrameListener previousListener = frameListener;
+		frameListener = null;
+		try {
+			readAudioStream(audioReader, format);
+			return collectDecodedBytes();
+		} finally {
+			frameListener = previousListener;
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given WAV or AIFF file by memory mapping its sample data, in 
+	 * windows of at most {@value #MAPPED_WINDOW_SIZE} bytes. Samples are read straight from the 
+	 * mapping.
+	 * 
+	 * @param audioFile FSK encoded data in a WAV or AIFF file.
+	 * @return decoded data bytes, or null if the input ended before a frame completed
+	 * @throws IllegalArgumentException if the sample rate of the file is not the one of the profile
+	 * @throws Exception
+	 * @see #decodeAudio(File)
+	 */
+	public byte[] decodeAudio(Path audioFile) throws Exception{
+		FileChannel channel = FileChannel.open(audioFile, StandardOpenOption.READ);
+		try {
+			PcmFormat format = checkFormat(PcmFormat.read(Channels.newInputStream(channel)));
+			FrameListener previousListener = frameListener;
+			frameListener = null;
+			try {
+				readAudioMapped(channel, format);
+				return collectDecodedBytes();
+			} finally {
+				frameListener = previousListener;
+			}
+		} finally {
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given PCM reader straight into a caller supplied buffer, with no 
+	 * intermediate array. The length header and data bytes of the first frame are written at the 
+	 * position of the buffer, which is then advanced past them. Heap and direct buffers are both 
+	 * supported. A frame listener, if set, is not called.
+	 * 
+	 * The reader is consumed as by {@link #decode(InputStream)}. The position of the buffer is only
+	 * advanced for a frame that completes during this call.
+	 * 
+	 * @param pcmReader FSK encoded data reader.
+	 * @param dst buffer receiving the decoded data bytes
+	 * @return number of bytes written, or -1 if the reader ended before a frame completed
+	 * @throws BufferOverflowException if the frame is longer than the remaining bytes of the buffer. 
+	 * Its position is left unchanged.
+	 * @throws Exception
+	 */
+	public int decodeInto(InputStream pcmReader, ByteBuffer dst) throws Exception{
+		FrameListener previousListener = frameListener;
+		frameListener = null;
+		frameTarget = dst;
+		try {
+			readStream(pcmReader);
+			return finishDecodeInto(dst);
+		} finally {
+			frameTarget = null;
+			frameListener = previousListener;
+		}
+	}
+	
+	/**
+	 * Decode the data encoded into given PCM file channel straight into a caller supplied buffer. 
+	 * The channel is mapped as by {@link #decodeMapped(FileChannel)}.
+	 * 
+	 * @param channel FSK encoded data channel.
+	 * @param dst buffer receiving the decoded data bytes
+	 * @return number of bytes written, or -1 if the channel ended before a frame completed
+	 * @throws BufferOverflowException if the frame is longer than the remaining bytes of the buffer. 
+	 * Its position is left unchanged.
+	 * @throws Exception
+	 * @see #decodeInto(InputStream, ByteBuffer)
+	 */
+	public int decodeMappedInto(FileChannel channel, ByteBuffer dst) throws Exception{
+		FrameListener previousListener = frameListener;
+		frameListener = null;
+		frameTarget = dst;
+		try {
+			readMapped(channel);
+			return finishDecodeInto(dst);
+		} finally {
+			frameTarget = null;
+			frameListener = previousListener;
+		}
+	}
+	
+	private int finishDecodeInto(ByteBuffer dst) {
+		if (frameOverflow) {
+			frameOverflow = false;
+			throw new BufferOverflowException();
+		}
+		if (!frameReady) {
+			return -1;
+		}
+		frameReady = false;
+		dst.position(handleFrameBase + length);
+		return length;
+	}
+	
+	/**
+	 * Decode every frame encoded into given PCM file.
+	 * 
+	 * @param pcmFile FSK encoded data in PCM File.
+	 * @return decoded frames, in the order they appear in the file
+	 * @throws Exception
+	 * @see #decodeFrames(InputStream)
+	 */
+	public List<FskFrame> decodeFrames(File pcmFile) throws Exception{
+		FileInputStream pcmReader = new FileInputStream(pcmFile);
+		try {
+			return decodeFrames(pcmReader);
+		} finally {
+			pcmReader.close();
+		}
+	}
+	
+	/**
+	 * Decode every frame encoded into given PCM file by memory mapping it.
+	 * 
+	 * @param pcmFile FSK encoded data in PCM File.
+	 * @return decoded frames, in the order they appear in the file
+	 * @throws Exception
+	 * @see #decodeFrames(InputStream)
+	 * @see #decodeMapped(FileChannel)
+	 */
+	public List<FskFrame> decodeFrames(Path pcmFile) throws Exception{
+		FileChannel channel = FileChannel.open(pcmFile, StandardOpenOption.READ);
+		FrameListener previousListener = frameListener;
+		FrameCollector collector = new FrameCollector();
+		frameListener = collector;
+		try {
+			readMapped(channel);
+			return collector.frames;
+		} finally {
+			frameListener = previousListener;
+			channel.close();
+		}
+	}
+	
+	/**
+	 * Decode every frame encoded into given PCM reader. Unlike {@link #decode(InputStream)}, 
+	 * decoding does not stop after the first frame: the decoder goes back to waiting for a 
+	 * channel seizure and keeps going until the end of the reader. A run of silence drops any 
+	 * partially decoded frame instead of stopping the decoder.
+	 * 
+	 * Call {@link #reset()} before reusing the decoder for another recording.
+	 * 
+	 * @param pcmReader FSK encoded data reader.
+	 * @return decoded frames, in the order they appear in the reader
+	 * @throws Exception
+	 */
+	public List<FskFrame> decodeFrames(InputStream pcmReader) throws Exception{
+		FrameListener previousListener = frameListener;
+		FrameCollector collector = new FrameCollector();
+		frameListener = collector;
+		try {
+			readStream(pcmReader);
+			return collector.frames;
+		} finally {
+			frameListener = previousListener;
+		}
+	}
+	
+	/**
+	 * Sets the listener notified by {@link #feed(short[], int, int)}, {@link #feed(ByteBuffer)} and 
+	 * {@link #feed(InputStream)} whenever a frame completes.
+	 * 
+	 * @param frameListener listener to notify, or null to remove the current one
+	 */
+	public void setFrameListener(FrameListener frameListener) {
+		this.frameListener = frameListener;
+	}
+	
+	/**
+	 * Pushes samples into the decoder. All demodulator and framing state is kept between calls, so 
+	 * a recording can be fed in chunks of any size as it arrives. Decoding is continuous, as with 
+	 * {@link #decodeFrames(InputStream)}: the frame listener is called from this method for every 
+	 * frame that completes, and decoding then carries on with the next sample. A decoder stopped by 
+	 * a single frame decode, such as {@link #decode(InputStream)}, goes back to waiting for a 
+	 * channel seizure.
+	 * 
+	 * @param samples 16-bit PCM samples
+	 * @param off index of the first sample to decode
+	 * @param len number of samples to decode
+	 * @throws IllegalStateException if no frame listener is set
+	 */
+	public void feed(short[] samples, int off, int len) {
+		startFeeding();
+		decodeSamples(samples, off, len);
+	}
+	
+	/**
+	 * Pushes 16-bit little-endian PCM bytes into the decoder, regardless of the byte order set on 
+	 * the buffer. The remaining bytes of the buffer are consumed; an odd trailing byte is kept and 
+	 * paired with the first byte of the next call.
+	 * 
+	 * @param pcm FSK encoded PCM data
+	 * @throws IllegalStateException if no frame listener is set
+	 * @see #feed(short[], int, int)
+	 */
+	public void feed(ByteBuffer pcm) {
+		startFeeding();
+		if (tempIndex != 0 && pcm.hasRemaining()) {
+			processSample((short) (((pcm.get() & 0xff) << 8) | prevChar));
+			tempIndex = 0;
+		}
+		boolean swap = pcm.order() != ByteOrder.LITTLE_ENDIAN;
+		while (pcm.remaining() >= 2) {
+			short sample = pcm.getShort();
+			processSample(swap ? Short.reverseBytes(sample) : sample);
+		}
+		if (pcm.hasRemaining()) {
+			prevChar = pcm.get() & 0xff;
+			tempIndex = 1;
+		}
+	}
+	
+	/**
+	 * Pushes every sample of given headerless 16-bit little-endian PCM reader into the decoder, 
+	 * reading it in blocks of {@value #READ_BUFFER_SIZE} bytes until it ends. Frames are passed to 
+	 * the listener as they complete, as with {@link #feed(short[], int, int)}, so this suits 
+	 * long-lived streams.
+	 * 
+	 * @param pcmReader FSK encoded data reader.
+	 * @throws IllegalStateException if no frame listener is set
+	 * @throws Exception
+	 */
+	public void feed(InputStream pcmReader) throws Exception{
+		startFeeding();
+		readStream(pcmReader);
+	}
+	
+	/**
+	 * Checks that a frame listener is set and re-arms a decoder stopped by a single frame decode.
+	 */
+	private void startFeeding() {
+		if (frameListener == null) {
+			throw new IllegalStateException("No frame listener set");
+		}
+		resume();
+	}
+	
+	/**
+	 * Re-arms a decoder stopped by a single frame decode, dropping the frame it stopped on so that 
+	 * frame is neither returned nor reported again.
+	 */
+	private void resume() {
+		if (!running) {
+			restartFraming();
+			running = true;
+		}
+	}
+	
+	private void readStream(InputStream pcmReader) throws Exception{
+		resume();
+		int read;
+		while (running && (read = pcmReader.read(readBuffer, 0, readBuffer.length)) != -1) {
+			int sampleCount = toSamples(readBuffer, read, sampleBuffer);
+			if (decodeSamples(sampleBuffer, 0, sampleCount) != 0) break;
+		}
+	}
+	
+	private void readMapped(FileChannel channel) throws Exception{
+		resume();
+		long size = channel.size() & ~1L;
+		long position = 0;
+		while (running && position < size) {
+			long windowSize = Math.min(MAPPED_WINDOW_SIZE, size - position);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+			ShortBuffer samples = window.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+			if (decodeSamples(samples) != 0) break;
+			position += windowSize;
+		}
+	}
+	
+	private PcmFormat checkFormat(PcmFormat format) throws IOException {
+		if (format.getSampleRate() != profile.getSampleRate()) {
+			throw new IllegalArgumentException("Audio sampled at " + format.getSampleRate() + " Hz, decoder expects " 
+					+ profile.getSampleRate() + " Hz; create the decoder with profile.withSampleRate(" + format.getSampleRate() + ")");
+		}
+		if (format.getFrameSize() > READ_BUFFER_SIZE) {
+			throw new IOException("Too many channels: " + format.getChannels());
+		}
+		return format;
+	}
+	
+	private void readAudioStream(InputStream audioReader, PcmFormat format) throws Exception{
+		resume();
+		ByteBuffer block = ByteBuffer.wrap(readBuffer).order(format.getByteOrder());
+		long remaining = format.getDataLength();
+		int read;
+		while (running && remaining > 0 
+				&& (read = audioReader.read(readBuffer, block.position(), (int) Math.min(block.remaining(), remaining))) != -1) {
+			remaining -= read;
+			block.position(block.position() + read);
+			block.flip();
+			if (decodeAudioSamples(block, format) != 0) break;
+			block.compact();
+		}
+	}
+	
+	private void readAudioMapped(FileChannel channel, PcmFormat format) throws Exception{
+		resume();
+		int frameSize = format.getFrameSize();
+		long maxWindowSize = MAPPED_WINDOW_SIZE / frameSize * frameSize;
+		long position = format.getDataOffset();
+		long end = position + Math.min(format.getDataLength(), channel.size() - position);
+		while (running && end - position >= frameSize) {
+			long windowSize = Math.min(maxWindowSize, (end - position) / frameSize * frameSize);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+			window.order(format.getByteOrder());
+			if (decodeAudioSamples(window, format) != 0) break;
+			position += windowSize;
+		}
+	}
+	
+	/**
+	 * Runs the first channel of the whole frames remaining in the buffer through the demodulator, 
+	 * leaving the buffer positioned after the last frame consumed.
+	 * 
+	 * @return size of the decoded frame, or 0 if no frame has completed yet
+	 */
+	private int decodeAudioSamples(ByteBuffer samples, PcmFormat format) {
+		int frameSize = format.getFrameSize();
+		int last = samples.limit() - frameSize;
+		int index = samples.position();
+		while (index <= last && running) {
+			int dataCount = processSample(format.sample(samples, index));
+			index += frameSize;
+			if (dataCount != 0) {
+				samples.position(index);
+				return dataCount;
+			}
+		}
+		samples.position(index);
+		return 0;
+	}
+	
+	/**
+	 * @return bytes of the frame that completed since the last call, or null if none did. A frame 
+	 * cut off by the end of the input is not returned.
+	 */
+	private byte[] collectDecodedBytes() {
+		if (!frameReady) return null;
+		frameReady = false;
+		return handleFrame.array();
+	}
+	
+	/**
+	 * @return bytes of the last frame, or null if no length header has been read. The array is 
+	 * handed out as is; the next frame gets a new one.
+	 */
+	private byte[] frameBytes() {
+		return length > 0 ? handleFrame.array() : null;
+	}
+	
+	/**
+	 * Converts a block of little-endian 16-bit PCM into samples. A trailing odd byte is 
+	 * kept in {@link #prevChar} and paired with the first byte of the next block.
+	 * 
+	 * @return number of samples written into dst
+	 */
+	private int toSamples(byte[] src, int len, short[] dst) {
+		int count = 0;
+		int i = 0;
+		if (tempIndex != 0 && len > 0) {
+			dst[count++] = (short) (((src[0] & 0xff) << 8) | prevChar);
+			tempIndex = 0;
+			i = 1;
+		}
+		for (; i + 1 < len; i += 2) {
+			dst[count++] = (short) ((src[i + 1] << 8) | (src[i] & 0xff));
+		}
+		if (i < len) {
+			prevChar = src[i] & 0xff;
+			tempIndex = 1;
+		}
+		return count;
+	}
+	
+	/**
+	 * Runs a block of samples through the demodulator.
+	 * 
+	 * @return size of the decoded frame, or 0 if no frame has completed yet
+	 */
+	private int decodeSamples(short[] samples, int off, int len) {
+		int end = off + len;
+		for (int i = off; i < end && running; i++) {
+			int dataCount = processSample(samples[i]);
+			if (dataCount != 0) return dataCount;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Runs the remaining samples of the given buffer through the demodulator.
+	 * 
+	 * @return size of the decoded frame, or 0 if no frame has completed yet
+	 */
+	private int decodeSamples(ShortBuffer samples) {
+		while (samples.hasRemaining() && running) {
+			int dataCount = processSample(samples.get());
+			if (dataCount != 0) return dataCount;
+		}
+		return 0;
+	}
+	
+	private int processSample(short sample) {
+		samplePosition++;
+		if (skippingLeadingZeroes) {
+			if (sample != 0) skippingLeadingZeroes = false;
+		}
+		
+		if (!skippingLeadingZeroes) {
+			if (sample == 0)trailingZeroes++;
+			else trailingZeroes = 0;
+			
+			if (trailingZeroes == trailingZeroesLimit) {
+				if (frameListener != null || frameDropped) {
+					frameDropped = false;
+					restartFraming();
+					return 0;
+				}
+				logger.log(Level.SEVERE,"Existing Trailing Zeros detected");
+				running = false;
+				return 0;
+			}
+			
+			if (decimator == null) {
+				return frameBit(correlator.isMark(sample));
+			} else if (decimator.add(sample)) {
+				return frameBit(correlator.isMark(decimator.output()));
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Frames one bit decision made outside this decoder. Silence detection and decimation are 
+	 * left to the caller, which demodulates at the rate given to {@link #FskDecoder(FskModemProfile, int)}.
+	 * 
+	 * @param mark true if the mark tone is the stronger one at this sample
+	 * @param samplePosition number of input samples seen so far, for frame offsets
+	 * @return number of data bytes if a frame completed without a frame listener, 0 otherwise
+	 */
+	int processDecision(boolean mark, long samplePosition) {
+		this.samplePosition = samplePosition;
+		return frameBit(mark);
+	}
+	
+	/**
+	 * @return true while a frame is being received, from its sync sequence until it completes or 
+	 * is dropped
+	 */
+	boolean isSynchronized() {
+		return handleState == FSK_STATE_DATA;
+	}
+	
+	private int frameBit(boolean mark) {
+		int dataCount = dspFskBit(mark);
+		if (dataCount != 0) {
+			if (handleInvalidCodes > maxInvalidCodes) {
+				if (logger.isLoggable(Level.WARNING)) logger.log(Level.WARNING, "Frame at sample " + handleFrameOffset 
+						+ " rejected, " + handleInvalidCodes + " invalid codes");
+				dropFrame();
+				running = true;
+				return 0;
+			}
+			invalidCodeCount = handleInvalidCodes;
+			if (invalidCodeCount != 0 && logger.isLoggable(Level.FINE)) logger.log(Level.FINE, "Frame at sample " 
+					+ handleFrameOffset + " has " + invalidCodeCount + " invalid codes");
+			if (frameListener != null) {
+				byte[] frameBytes = frameBytes();
+				if (frameBytes != null) {
+					frameListener.onFrame(new FskFrame(frameBytes, handleFrameOffset, invalidCodeCount, profile));
+				}
+				restartFraming();
+				running = true;
+				return 0;
+			}
+			frameReady = true;
+		}
+		return dataCount;
+	}
+    	
+	/**
+	 * Demodulates the bit decision of one sample. This runs for every sample and must not allocate; 
+	 * anything logged from here has to be guarded by {@link Logger#isLoggable(Level)}.
+	 */
+	private int dspFskBit(boolean mark) {
+		handlePreviousBit = handleCurrentBit;
+		handleCurrentBit = mark;
+
+		if (handlePreviousBit != handleCurrentBit) {
+			handleCellPos = 0.5; 
+		}
+		handleCellPos += handleCellAdj; 
+
+		if (handleCellPos > 1.0) {
+			handleCellPos -= 1.0;
+
+			switch (handleState) {
+			case FSK_STATE_DATA: {
+				handleNibble = handleNibble | ((handleCurrentBit ? 0 : 1) & 0xff);
+				handleNibbleCount++;
+				if (handleNibbleCount > 5) {
+					int fourBnibble = sixBToNibble(handleNibble);
+					if (fourBnibble == INVALID_NIBBLE) {
+						handleInvalidCodes++;
+						fourBnibble = 0;
+					}
+
+					if (handleCharCount < 4) {
+						if (((handleCharCount) & 0x1) == 0) {
+							handleTempByte = ((fourBnibble << 4) & 0xF0);
+						} else {
+							handleTempByte = (handleTempByte | (fourBnibble & 0xF));
+							handleDataSize = (handleDataSize << 8) | handleTempByte;
+						}
+						if (handleCharCount == 3) {
+							if (logger.isLoggable(Level.FINE)) logger.log(Level.FINE, "Length header="+handleDataSize);
+							if (handleDataSize > maxDataSize) {
+								if (logger.isLoggable(Level.FINE)) logger.log(Level.FINE, "Frame at sample " + handleFrameOffset 
+										+ " dropped, length header above " + maxDataSize);
+								dropFrame();
+								handleLastBit = handleCurrentBit;
+								return 0;
+							}
+							if (frameTarget == null) {
+								handleFrame = ByteBuffer.wrap(new byte[handleDataSize + 2]);
+								handleFrameBase = 0;
+							} else if (handleDataSize + 2 <= frameTarget.remaining()) {
+								handleFrame = frameTarget;
+								handleFrameBase = frameTarget.position();
+							} else {
+								frameOverflow = true;
+								running = false;
+								return 0;
+							}
+							length = handleDataSize + 2;
+							handleFrame.put(handleFrameBase, (byte) (handleDataSize >> 8));
+							handleFrame.put(handleFrameBase + 1, (byte) handleDataSize);
+							handleDataSize = handleDataSize * 2 + 4;
+						}
+					} else if (handleCharCount < handleDataSize) {
+						if (((handleCharCount) & 0x1) == 0) {
+							handleTempByte = ((fourBnibble << 4) & 0xF0);
+						} else {
+							handleTempByte = handleTempByte | (fourBnibble & 0xF);
+							handleFrame.put(handleFrameBase + handleCharCount / 2, (byte) handleTempByte);
+						}
+					}
+
+					if (handleCharCount >= 4 && handleCharCount >= handleDataSize) {
+						logger.log(Level.FINE,"Processing done");
+						running = false;
+						return handleDataSize / 2;
+					}
+					handleCharCount++;
+					handleNibbleCount = 0;
+					handleNibble = 0;
+				} else {
+					handleNibble = (handleNibble << 1);
+				}
+
+			}break;
+			
+			case FSK_STATE_CHANSEIZE:{
+				if (handleLastBit != handleCurrentBit)handleConscutiveStateBits++;
+				else handleConscutiveStateBits = 0;
+
+				if (handleConscutiveStateBits > 30) {
+					handleState = FSK_STATE_SYNC;
+					handleConscutiveStateBits = 0;
+				}
+			}break;
+
+			case FSK_STATE_SYNC:{
+				handleSyncData = (short) (handleSyncData << 1);
+				handleSyncData |= (handleCurrentBit ? 0 : 1);
+
+				if (handleSyncData == SYNC_SEQUENCE) {
+					handleState = FSK_STATE_DATA;
+					handleFrameOffset = samplePosition - 1;
+				}
+			}break;
+
+			case FSK_STATE_CARRIERSIG: { 
+				if (handleCurrentBit) handleConscutiveStateBits++;
+				else handleConscutiveStateBits = 0;
+
+				if (handleConscutiveStateBits > 15) {
+					handleState = FSK_STATE_DATA;
+					handleConscutiveStateBits = 0;
+				}
+			}break;
+			}
+			handleLastBit = handleCurrentBit;
+		}
+		return 0;
+	}
+	
+	/**
+	 * Maps a 6-bit code received in the DATA state to the 4-bit nibble it encodes.
+	 * 
+	 * @return the nibble, or {@link #INVALID_NIBBLE} if the code is not valid
+	 */
+	static int sixBToNibble(int sixBCode) {
+		return NIBBLE_TABLE[sixBCode & 0x3F];
+	}
+	
+	private static class FrameCollector implements FrameListener {
+		final List<FskFrame> frames = new ArrayList<FskFrame>();
+
+		@Override
+		public void onFrame(FskFrame frame) {
+			frames.add(frame);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.jfsk;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded pool of {@link FskDecoder} instances for a single modem profile and correlator engine.
+ * 
+ * {@link #borrow()} hands out an idle decoder, or creates a new one if none is idle. 
+ * {@link #release(FskDecoder)} resets the decoder and keeps it for reuse, unless the pool already 
+ * holds its maximum number of idle decoders, in which case it is dropped. The pool is thread safe; 
+ * a borrowed decoder must only be used by one thread at a time.
+ *
+ *<pre> {@code
+ *  FskDecoderPool pool = new FskDecoderPool(FskModemProfile.CUSTOM_EXAMPLE, 32);
+ *  FskDecoder fskDecoder = pool.borrow();
+ *  try {
+ *      decodedData = fskDecoder.decode(pcmStream);
+ *  } finally {
+ *      pool.release(fskDecoder);
+ *  }
+ * }</pre>
+ */
+public class FskDecoderPool {
+	private final FskModemProfile profile;
+	private final CorrelatorEngine engine;
+	private final ArrayBlockingQueue<FskDecoder> idleDecoders;
+
+	/**
+	 * @param profile modem profile of the pooled decoders
+	 * @param maxIdle maximum number of idle decoders kept by the pool
+	 */
+	public FskDecoderPool(FskModemProfile profile, int maxIdle) {
+		this(profile, CorrelatorEngine.BRUTE_FORCE, maxIdle);
+	}
+
+	/**
+	 * @param profile modem profile of the pooled decoders
+	 * @param engine correlator engine of the pooled decoders
+	 * @param maxIdle maximum number of idle decoders kept by the pool
+	 */
+	public FskDecoderPool(FskModemProfile profile, CorrelatorEngine engine, int maxIdle) {
+		if (maxIdle <= 0) {
+			throw new IllegalArgumentException("maxIdle must be positive: " + maxIdle);
+		}
+		this.profile = profile;
+		this.engine = engine;
+		this.idleDecoders = new ArrayBlockingQueue<FskDecoder>(maxIdle);
+	}
+
+	/**
+	 * @return an idle decoder, or a new one if the pool is empty
+	 */
+	public FskDecoder borrow() {
+		FskDecoder decoder = idleDecoders.poll();
+		if (decoder == null) {
+			decoder = new FskDecoder(profile, engine);
+		}
+		return decoder;
+	}
+
+	/**
+	 * Resets the decoder and returns it to the pool. The decoder must not be used by the caller 
+	 * afterwards.
+	 * 
+	 * @param decoder decoder obtained from {@link #borrow()}
+	 * @throws IllegalArgumentException if the decoder was created for another profile or engine
+	 */
+	public void release(FskDecoder decoder) {
+		if (!profile.equals(decoder.getProfile()) || engine != decoder.getEngine()) {
+			throw new IllegalArgumentException("Decoder does not belong to this pool");
+		}
+		decoder.reset();
+		idleDecoders.offer(decoder);
+	}
+
+	/**
+	 * @return number of idle decoders currently held by the pool
+	 */
+	public int getIdleCount() {
+		return idleDecoders.size();
+	}
+}
@@ -0,0 +1,172 @@
+package org.jfsk;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes many concurrent streams, such as live call legs, with one thread and one 
+ * {@link FskDecoder} per stream. 
+ * 
+ * When the library is built with the {@code java21} profile and runs on Java 21 or later, every 
+ * stream gets its own virtual thread, so a thread blocked reading a stream costs next to nothing 
+ * and tens of thousands of streams need no thread pool sizing. Otherwise streams run on a cached 
+ * pool of platform threads. {@link #isUsingVirtualThreads()} tells which.
+ * 
+ * Submitted streams are owned by the service and closed once decoded. Decoders are never shared, so 
+ * the state of one stream cannot leak into another.
+ *
+ *<pre> {@code
+ *  FskDecodingService service = new FskDecodingService(FskModemProfile.CUSTOM_EXAMPLE);
+ *  Future<byte[]> decodedData = service.submit(callLegStream);
+ *  ...
+ *  byte[] data = decodedData.get();
+ *  service.close();
+ * }</pre>
+ */
+public class FskDecodingService implements AutoCloseable {
+	private final FskModemProfile profile;
+	private final CorrelatorEngine engine;
+	private final ExecutorService executor;
+
+	/**
+	 * @param profile modem profile of the streams
+	 */
+	public FskDecodingService(FskModemProfile profile) {
+		this(profile, CorrelatorEngine.BRUTE_FORCE);
+	}
+
+	/**
+	 * @param profile modem profile of the streams
+	 * @param engine correlator engine of the decoders
+	 */
+	public FskDecodingService(FskModemProfile profile, CorrelatorEngine engine) {
+		this(profile, engine, DecodingExecutors.newPerStreamExecutor());
+	}
+
+	/**
+	 * @param profile modem profile of the streams
+	 * @param engine correlator engine of the decoders
+	 * @param executor executor the streams are decoded on, shut down with the service
+	 */
+	public FskDecodingService(FskModemProfile profile, CorrelatorEngine engine, ExecutorService executor) {
+		this.profile = profile;
+		this.engine = engine;
+		this.executor = executor;
+	}
+
+	/**
+	 * @return true if streams are decoded on virtual threads by default
+	 */
+	public static boolean isUsingVirtualThreads() {
+		return DecodingExecutors.isUsingVirtualThreads();
+	}
+
+	/**
+	 * Decodes the first frame of a stream, as {@link FskDecoder#decode(InputStream)} does.
+	 * 
+	 * @param pcmReader FSK encoded data reader, closed once decoded
+	 * @return the decoded data bytes, or null if the stream holds no frame
+	 */
+	public Future<byte[]> submit(final InputStream pcmReader) {
+		return executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws Exception {
+				try {
+					return new FskDecoder(profile, engine).decode(pcmReader);
+				} finally {
+					pcmReader.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Decodes every frame of a stream, as {@link FskDecoder#decodeFrames(InputStream)} does.
+	 * 
+	 * @param pcmReader FSK encoded data reader, closed once decoded
+	 * @return the decoded frames
+	 */
+	public Future<List<FskFrame>> submitFrames(final InputStream pcmReader) {
+		return executor.submit(new Callable<List<FskFrame>>() {
+			@Override
+			public List<FskFrame> call() throws Exception {
+				try {
+					return new FskDecoder(profile, engine).decodeFrames(pcmReader);
+				} finally {
+					pcmReader.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Decodes every frame of a stream, passing each one to the listener as soon as it completes, as 
+	 * {@link FskDecoder#feed(InputStream)} does. Suited to long-lived streams.
+	 * 
+	 * @param pcmReader FSK encoded data reader, closed once decoded
+	 * @param frameListener called on the stream's thread for every frame
+	 * @return completes when the end of the stream is reached
+	 */
+	public Future<Void> submit(final InputStream pcmReader, final FrameListener frameListener) {
+		return executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				try {
+					FskDecoder decoder = new FskDecoder(profile, engine);
+					decoder.setFrameListener(frameListener);
+					decoder.feed(pcmReader);
+					return null;
+				} finally {
+					pcmReader.close();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Stops accepting streams. Streams already submitted are decoded to the end.
+	 */
+	public void shutdown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Waits for submitted streams to complete after {@link #shutdown()}.
+	 * 
+	 * @return true if all streams completed, false if the timeout elapsed first
+	 * @throws InterruptedException
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+
+	/**
+	 * Shuts the service down and waits for all submitted streams to complete, as
+	 * {@code ExecutorService.close()} does on Java 19 and later. If the calling thread is interrupted
+	 * while waiting, the streams still running are interrupted and waited for, and the interrupt
+	 * status of the calling thread is restored before returning.
+	 */
+	@Override
+	public void close() {
+		shutdown();
+		boolean interrupted = false;
+		boolean terminated = executor.isTerminated();
+		while (!terminated) {
+			try {
+				terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				if (!interrupted) {
+					executor.shutdownNow();
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
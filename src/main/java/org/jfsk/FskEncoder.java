@@ -0,0 +1,260 @@
+package org.jfsk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * <b>FSK Encoder</b>, the inverse of {@link FskDecoder}. Produces raw 16-bit little-endian mono PCM 
+ * that {@link FskDecoder} decodes back into the length header followed by the payload.
+ * 
+ * Each frame is made of leading silence, a channel seizure of alternating bits, the sync sequence, 
+ * a 2-byte big-endian length header and the payload, all nibbles sent with the 4B/6B line code, 
+ * followed by a short mark tail and trailing silence. Tones are phase continuous across bits and 
+ * frames.
+ * 
+ * Impairments can be added to exercise the decoder: white noise, a frequency offset on both tones 
+ * and transmitter clock drift. The encoder is meant for load generation and round-trip testing and 
+ * is not thread safe.
+ * 
+ * Here is example use:
+ *<pre> {@code
+ *  FskEncoder fskEncoder = new FskEncoder(FskModemProfile.CUSTOM_EXAMPLE);
+ *  fskEncoder.setNoise(0.05);
+ *  byte[] pcm = fskEncoder.encode(payload);
+ * }</pre>
+ */
+public class FskEncoder {
+	private static final int BUFFER_SIZE = 16384;
+	private static final int MAX_PAYLOAD_SIZE = 0xFFFF;
+	private static final int TAIL_BITS = 8;
+	private static final int TRAILING_SILENCE = 1200;   // silent samples after each frame, at FskDecoder.SAMPLE_RATE
+	
+	private final FskModemProfile profile;
+	
+	private double amplitude = 0.5;
+	private double noise = 0;
+	private double frequencyOffset = 0;
+	private double clockDrift = 0;
+	private int channelSeizureBits = 64;
+	private int leadingSilence = 400;
+	private int trailingSilence;
+	private Random random = new Random();
+	
+	// oscillator state, kept between frames so that the signal stays phase continuous
+	private double phaseCos = 1;
+	private double phaseSin = 0;
+	private double bitDue = 0;
+	
+	// per frame settings, derived from the profile and impairments
+	private double markRotCos, markRotSin, spaceRotCos, spaceRotSin;
+	private double samplesPerBit;
+	
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int bufferPos = 0;
+
+	/**
+	 * Creates an encoder for {@link FskModemProfile#CUSTOM_EXAMPLE}.
+	 */
+	public FskEncoder() {
+		this(FskModemProfile.CUSTOM_EXAMPLE);
+	}
+
+	/**
+	 * Creates an encoder for the given modem profile.
+	 * 
+	 * @param profile modem and sample rate of the PCM data to produce
+	 */
+	public FskEncoder(FskModemProfile profile) {
+		this.profile = profile;
+		trailingSilence = (int) ((long) TRAILING_SILENCE * profile.getSampleRate() / FskDecoder.SAMPLE_RATE);
+	}
+
+	/**
+	 * @param amplitude peak amplitude of the tones, as a fraction of full scale. Defaults to 0.5.
+	 */
+	public void setAmplitude(double amplitude) {
+		this.amplitude = amplitude;
+	}
+
+	/**
+	 * @param noise standard deviation of the white gaussian noise added to every sample, silence 
+	 * included, as a fraction of full scale. Defaults to 0.
+	 */
+	public void setNoise(double noise) {
+		this.noise = noise;
+	}
+
+	/**
+	 * @param frequencyOffset offset in Hz added to both the mark and space tones. Defaults to 0.
+	 */
+	public void setFrequencyOffset(double frequencyOffset) {
+		this.frequencyOffset = frequencyOffset;
+	}
+
+	/**
+	 * @param clockDrift transmitter clock error in parts per million. A positive drift makes the 
+	 * tones higher and the bits shorter. Defaults to 0.
+	 */
+	public void setClockDrift(double clockDrift) {
+		this.clockDrift = clockDrift;
+	}
+
+	/**
+	 * @param channelSeizureBits number of alternating bits sent before the sync sequence. The 
+	 * decoder needs more than 30 of them. Defaults to 64.
+	 */
+	public void setChannelSeizureBits(int channelSeizureBits) {
+		this.channelSeizureBits = channelSeizureBits;
+	}
+
+	/**
+	 * @param leadingSilence number of silent samples before each frame. Defaults to 400.
+	 */
+	public void setLeadingSilence(int leadingSilence) {
+		this.leadingSilence = leadingSilence;
+	}
+
+	/**
+	 * @param trailingSilence number of silent samples after each frame. Defaults to 
+	 * {@value #TRAILING_SILENCE} at 8000 Hz, scaled to the sample rate of the profile like the 
+	 * silence the decoder waits for, so that without noise the decoder detects the end of the 
+	 * recording.
+	 */
+	public void setTrailingSilence(int trailingSilence) {
+		this.trailingSilence = trailingSilence;
+	}
+
+	/**
+	 * @param seed seed of the noise generator, for reproducible output
+	 */
+	public void setSeed(long seed) {
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Encodes one frame.
+	 * 
+	 * @param payload data to send, at most 65535 bytes
+	 * @return PCM data of the frame
+	 */
+	public byte[] encode(byte[] payload) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			encode(payload, out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes one frame into the given stream. Calling this repeatedly on the same stream produces 
+	 * a recording holding several frames.
+	 * 
+	 * @param payload data to send, at most 65535 bytes
+	 * @param out stream the PCM data is written to
+	 * @throws IOException
+	 */
+	public void encode(byte[] payload, OutputStream out) throws IOException {
+		if (payload.length > MAX_PAYLOAD_SIZE) {
+			throw new IllegalArgumentException("Payload too large: " + payload.length);
+		}
+		prepare();
+		
+		writeSilence(leadingSilence, out);
+		for (int i = 0; i < channelSeizureBits; i++) {
+			// alternate so that the last seizure bit is 0, followed by the leading 1 of the sync sequence
+			writeBit((channelSeizureBits - i) & 1, out);
+		}
+		writeBits(FskDecoder.SYNC_SEQUENCE & 0xFFFF, 16, out);
+		
+		writeByte(payload.length >> 8, out);
+		writeByte(payload.length, out);
+		for (int i = 0; i < payload.length; i++) {
+			writeByte(payload[i], out);
+		}
+		// the decoder reads one code past the end of the data before completing the frame
+		writeBits(FskDecoder.SIX_B_CODES[0], 6, out);
+		for (int i = 0; i < TAIL_BITS; i++) {
+			writeBit(0, out);
+		}
+		
+		writeSilence(trailingSilence, out);
+		flush(out);
+	}
+
+	private void prepare() {
+		double clock = 1 + clockDrift / 1e6;
+		double sampleRate = profile.getSampleRate();
+		double markPhi = 2 * Math.PI * (profile.getFreqMark() + frequencyOffset) * clock / sampleRate;
+		double spacePhi = 2 * Math.PI * (profile.getFreqSpace() + frequencyOffset) * clock / sampleRate;
+		markRotCos = Math.cos(markPhi);
+		markRotSin = Math.sin(markPhi);
+		spaceRotCos = Math.cos(spacePhi);
+		spaceRotSin = Math.sin(spacePhi);
+		samplesPerBit = sampleRate / profile.getBaudRate() / clock;
+	}
+
+	private void writeByte(int value, OutputStream out) throws IOException {
+		writeBits(FskDecoder.SIX_B_CODES[(value >> 4) & 0xF], 6, out);
+		writeBits(FskDecoder.SIX_B_CODES[value & 0xF], 6, out);
+	}
+
+	private void writeBits(int value, int count, OutputStream out) throws IOException {
+		for (int i = count - 1; i >= 0; i--) {
+			writeBit((value >> i) & 1, out);
+		}
+	}
+
+	/**
+	 * Writes one bit cell: space tone for 1, mark tone for 0.
+	 */
+	private void writeBit(int bit, OutputStream out) throws IOException {
+		double rotCos = bit == 1 ? spaceRotCos : markRotCos;
+		double rotSin = bit == 1 ? spaceRotSin : markRotSin;
+		bitDue += samplesPerBit;
+		int samples = (int) bitDue;
+		bitDue -= samples;
+		
+		double c = phaseCos;
+		double s = phaseSin;
+		for (int i = 0; i < samples; i++) {
+			double nextCos = c * rotCos - s * rotSin;
+			s = s * rotCos + c * rotSin;
+			c = nextCos;
+			writeSample(amplitude * s, out);
+		}
+		// keep the oscillator on the unit circle
+		double magnitude = Math.sqrt(c * c + s * s);
+		phaseCos = c / magnitude;
+		phaseSin = s / magnitude;
+	}
+
+	private void writeSilence(int samples, OutputStream out) throws IOException {
+		for (int i = 0; i < samples; i++) {
+			writeSample(0, out);
+		}
+	}
+
+	private void writeSample(double value, OutputStream out) throws IOException {
+		if (noise != 0) {
+			value += noise * random.nextGaussian();
+		}
+		long sample = Math.round(value * 32767);
+		if (sample > Short.MAX_VALUE) sample = Short.MAX_VALUE;
+		else if (sample < Short.MIN_VALUE) sample = Short.MIN_VALUE;
+		
+		if (bufferPos == BUFFER_SIZE) {
+			flush(out);
+		}
+		buffer[bufferPos++] = (byte) sample;
+		buffer[bufferPos++] = (byte) (sample >> 8);
+	}
+
+	private void flush(OutputStream out) throws IOException {
+		out.write(buffer, 0, bufferPos);
+		bufferPos = 0;
+	}
+}
@@ -0,0 +1,79 @@
+package org.jfsk;
+
+/**
+ * A frame decoded from a PCM recording, along with where it was found.
+ * 
+ * @see FskDecoder#decodeFrames(java.io.InputStream)
+ */
+public final class FskFrame {
+	private final byte[] data;
+	private final long sampleOffset;
+	private final int invalidCodeCount;
+	private final int channel;
+	private final FskModemProfile profile;
+
+	FskFrame(byte[] data, long sampleOffset, int invalidCodeCount, FskModemProfile profile) {
+		this(data, sampleOffset, invalidCodeCount, 0, profile);
+	}
+
+	FskFrame(byte[] data, long sampleOffset, int invalidCodeCount, int channel, FskModemProfile profile) {
+		this.data = data;
+		this.sampleOffset = sampleOffset;
+		this.invalidCodeCount = invalidCodeCount;
+		this.channel = channel;
+		this.profile = profile;
+	}
+
+	/**
+	 * @return decoded data bytes, including the length header. The array is not copied.
+	 */
+	public byte[] getData() {
+		return data;
+	}
+
+	/**
+	 * @return offset, in samples from the start of the recording, of the sample at which the 
+	 * sync sequence of this frame was detected. For multi-channel recordings, samples of one channel.
+	 */
+	public long getSampleOffset() {
+		return sampleOffset;
+	}
+
+	/**
+	 * @return number of invalid 6-bit codes received in this frame. Each was decoded as nibble 0, 
+	 * so the data of a frame with invalid codes is corrupt.
+	 * @see FskDecoder#setMaxInvalidCodes(int)
+	 */
+	public int getInvalidCodeCount() {
+		return invalidCodeCount;
+	}
+
+	/**
+	 * @return index of the channel this frame was decoded from, 0 for mono recordings
+	 * @see MultiChannelFskDecoder
+	 */
+	public int getChannel() {
+		return channel;
+	}
+
+	/**
+	 * @return modem profile this frame was decoded with
+	 * @see MultiProfileFskDecoder
+	 */
+	public FskModemProfile getProfile() {
+		return profile;
+	}
+
+	/**
+	 * @return true if every code of this frame was valid
+	 */
+	public boolean isClean() {
+		return invalidCodeCount == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "FskFrame[length=" + data.length + ", channel=" + channel + ", sampleOffset=" + sampleOffset 
+				+ ", invalidCodes=" + invalidCodeCount + ", profile=" + profile + "]";
+	}
+}
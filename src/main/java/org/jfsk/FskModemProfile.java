@@ -0,0 +1,117 @@
+package org.jfsk;
+
+import org.jfsk.FskDecoder.FskModemDefinition;
+
+/**
+ * Immutable description of the modem to decode: mark and space frequencies, baud rate and the 
+ * sample rate of the PCM data. Profiles are passed to {@link FskDecoder#FskDecoder(FskModemProfile)}.
+ * 
+ * PCM data may be sampled at any rate that can represent both tones. The correlator window, bit 
+ * timing and silence detection of the decoder follow the sample rate of the profile, so recordings 
+ * are decoded at their native rate without resampling. Use {@link #withSampleRate(int)} to decode 
+ * a predefined modem recorded at another rate.
+ * 
+ * The correlator tables for a profile are computed once, the first time a decoder is created for 
+ * it, and shared by every decoder for a profile with the same tones and sample rate.
+ *
+ *<pre> {@code
+ *  FskDecoder fskDecoder = new FskDecoder(FskModemProfile.V23_FORWARD_MODE2);
+ * }</pre>
+ */
+public final class FskModemProfile {
+	
+	/** V.23 forward channel mode 1, 600 bps for long haul. */
+	public static final FskModemProfile V23_FORWARD_MODE1 = new FskModemProfile(FskDecoder.FSK_MODEM_DEFINITIONS[0], FskDecoder.SAMPLE_RATE);
+	
+	/** V.23 forward channel mode 2, standard 1200 bps. */
+	public static final FskModemProfile V23_FORWARD_MODE2 = new FskModemProfile(FskDecoder.FSK_MODEM_DEFINITIONS[1], FskDecoder.SAMPLE_RATE);
+	
+	/** V.23 backward channel, 75 bps return path. */
+	public static final FskModemProfile V23_BACKWARD = new FskModemProfile(FskDecoder.FSK_MODEM_DEFINITIONS[2], FskDecoder.SAMPLE_RATE);
+	
+	/** Bell 202 half-duplex. */
+	public static final FskModemProfile BELL202 = new FskModemProfile(FskDecoder.FSK_MODEM_DEFINITIONS[3], FskDecoder.SAMPLE_RATE);
+	
+	/** Custom example modem, used by {@link FskDecoder#FskDecoder()}. */
+	public static final FskModemProfile CUSTOM_EXAMPLE = new FskModemProfile(FskDecoder.FSK_MODEM_DEFINITIONS[4], FskDecoder.SAMPLE_RATE);
+
+	private final int freqSpace;
+	private final int freqMark;
+	private final int baudRate;
+	private final int sampleRate;
+
+	/**
+	 * @param freqSpace frequency of the 0 bit in Hz
+	 * @param freqMark frequency of the 1 bit in Hz
+	 * @param baudRate baud rate of the modem
+	 * @param sampleRate sample rate of the PCM data in Hz
+	 * @throws IllegalArgumentException if a value is not positive, or the sample rate is too low 
+	 * to represent both tones
+	 */
+	public FskModemProfile(int freqSpace, int freqMark, int baudRate, int sampleRate) {
+		if (freqSpace <= 0 || freqMark <= 0 || baudRate <= 0 || sampleRate <= 0) {
+			throw new IllegalArgumentException("Frequencies, baud rate and sample rate must be positive");
+		}
+		if (freqSpace * 2 >= sampleRate || freqMark * 2 >= sampleRate) {
+			throw new IllegalArgumentException("Sample rate " + sampleRate + " is too low for tones " + freqMark + "/" + freqSpace);
+		}
+		if (baudRate >= sampleRate) {
+			throw new IllegalArgumentException("Sample rate " + sampleRate + " is too low for baud rate " + baudRate);
+		}
+		this.freqSpace = freqSpace;
+		this.freqMark = freqMark;
+		this.baudRate = baudRate;
+		this.sampleRate = sampleRate;
+	}
+	
+	FskModemProfile(FskModemDefinition definition, int sampleRate) {
+		this(definition.freqSpace, definition.freqMark, definition.baudRate, sampleRate);
+	}
+	
+	/**
+	 * @return a profile for the same modem with PCM data at the given sample rate
+	 */
+	public FskModemProfile withSampleRate(int sampleRate) {
+		if (sampleRate == this.sampleRate) return this;
+		return new FskModemProfile(freqSpace, freqMark, baudRate, sampleRate);
+	}
+
+	public int getFreqSpace() {
+		return freqSpace;
+	}
+
+	public int getFreqMark() {
+		return freqMark;
+	}
+
+	public int getBaudRate() {
+		return baudRate;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) return true;
+		if (!(obj instanceof FskModemProfile)) return false;
+		FskModemProfile other = (FskModemProfile) obj;
+		return freqSpace == other.freqSpace && freqMark == other.freqMark 
+				&& baudRate == other.baudRate && sampleRate == other.sampleRate;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = freqSpace;
+		result = 31 * result + freqMark;
+		result = 31 * result + baudRate;
+		result = 31 * result + sampleRate;
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "FskModemProfile[space=" + freqSpace + ", mark=" + freqMark + ", baud=" + baudRate + ", sampleRate=" + sampleRate + "]";
+	}
+}
@@ -0,0 +1,336 @@
+package org.jfsk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Identifies which of several modem profiles a recording uses from a short scan of its start, so
+ * it can be decoded by a single {@link FskDecoder} instead of trial decodes with every profile.
+ *
+ * Scanning starts where the leading silence of the recording ends and covers the first
+ * {@value #DEFAULT_SCAN_MILLIS} ms by default. The mark and space tones of every candidate are
+ * correlated over its own correlation window, as the decoder does, sharing tones the candidates
+ * have in common. Each candidate is then scored on two counts:
+ * <ul>
+ * <li>tone fit: the share of the signal power its stronger tone explains over the scan, beyond
+ * what white noise would. It is close to 1 for a clean signal of that tone pair and drops for
+ * other tones and noise. Weighting by power keeps stretches of line noise before the signal from
+ * diluting it.</li>
+ * <li>baud rate: measured from the most common length of the runs of identical bit decisions,
+ * which is one bit in a channel seizure and in most data. Decisions are taken on the mark to
+ * space contrast smoothed over half a correlation window or a quarter of a bit, whichever is
+ * longer, so slow modems whose tones are too close to tell apart within one window still switch
+ * once per bit, and only runs where the candidate tones fit are counted. The baud rate must be
+ * within {@value #BAUD_TOLERANCE} of the candidate baud rate.</li>
+ * </ul>
+ * The candidate with the best tone fit among those of a matching baud rate is picked, provided its
+ * tone fit is at least {@value #MIN_TONE_FIT}.
+ *
+ * The tone bank correlates short windows rather than the whole scan in one block: a channel seizure
+ * alternates the tones at the baud rate, and a phase continuous signal switching tones that way has
+ * its spectral lines on either side of the tones, not on them.
+ *
+ * Detectors are not thread safe but can be reused for any number of recordings.
+ *
+ *<pre> {@code
+ *  FskModemProfile profile = new FskProfileDetector(8000).detect(pcmFile);
+ *  if (profile != null) {
+ *      decodedData = new FskDecoder(profile).decode(pcmFile);
+ *  }
+ * }</pre>
+ */
+public class FskProfileDetector {
+	private static final Logger logger = Logger.getLogger(FskProfileDetector.class.getName());
+
+	/** Length of audio scanned after the leading silence unless set otherwise, in milliseconds. */
+	static final int DEFAULT_SCAN_MILLIS = 400;
+	/** Lowest tone fit of a detected profile. */
+	static final double MIN_TONE_FIT = 0.3;
+	/** Largest relative difference between measured and profile baud rates. */
+	static final double BAUD_TOLERANCE = 0.2;
+
+	private final FskModemProfile[] candidates;
+	private final ToneBank toneBank;
+	private final int correlatedRate;          // rate at which the tone bank correlates, after decimation
+	private final int minRunLength;            // shorter runs are noise: half the shortest bit of any candidate
+	private final int maxRunLength;            // longer runs are not counted: twice the longest bit of any candidate
+	private int scanSamples;                   // input samples scanned after the leading silence
+
+	private final double toneEnergySums[];
+	private final double windowPowerSums[];
+	private final double smoothing[];          // weight of a new sample in the smoothed contrast of each candidate
+	private final double contrasts[];          // smoothed mark to space contrast of each candidate
+	private final int runCounts[][];           // number of runs of identical bit decisions, by candidate and length
+	private final boolean lastBits[];
+	private final int runLengths[];
+	private final double runFitSums[];         // tone fit summed over the current run of each candidate
+
+	private final byte[] readBuffer = new byte[FskDecoder.READ_BUFFER_SIZE];
+	private final short[] sampleBuffer = new short[FskDecoder.READ_BUFFER_SIZE / 2];
+
+	private double toneFit;
+	private double baudRate;
+
+	/**
+	 * Creates a detector choosing among every predefined profile of {@link FskModemProfile} at the
+	 * given sample rate.
+	 *
+	 * @param sampleRate sample rate of the PCM data
+	 */
+	public FskProfileDetector(int sampleRate) {
+		this(FskModemProfile.V23_FORWARD_MODE1.withSampleRate(sampleRate),
+				FskModemProfile.V23_FORWARD_MODE2.withSampleRate(sampleRate),
+				FskModemProfile.V23_BACKWARD.withSampleRate(sampleRate),
+				FskModemProfile.BELL202.withSampleRate(sampleRate),
+				FskModemProfile.CUSTOM_EXAMPLE.withSampleRate(sampleRate));
+	}
+
+	/**
+	 * Creates a detector choosing among the given profiles. On equal scores, the one given first wins.
+	 *
+	 * @param candidates modems to choose from, all at the sample rate of the PCM data
+	 * @throws IllegalArgumentException if no profile is given or the sample rates differ
+	 */
+	public FskProfileDetector(FskModemProfile... candidates) {
+		toneBank = new ToneBank(candidates);
+		this.candidates = candidates.clone();
+		correlatedRate = candidates[0].getSampleRate() / toneBank.getDownsamplingCount();
+		int minBaudRate = Integer.MAX_VALUE;
+		int maxBaudRate = 0;
+		for (FskModemProfile candidate : candidates) {
+			minBaudRate = Math.min(minBaudRate, candidate.getBaudRate());
+			maxBaudRate = Math.max(maxBaudRate, candidate.getBaudRate());
+		}
+		minRunLength = Math.max(1, correlatedRate / maxBaudRate / 2);
+		maxRunLength = 2 * correlatedRate / minBaudRate;
+		setScanMillis(DEFAULT_SCAN_MILLIS);
+
+		toneEnergySums = new double[candidates.length];
+		windowPowerSums = new double[candidates.length];
+		smoothing = new double[candidates.length];
+		contrasts = new double[candidates.length];
+		for (int i = 0; i < candidates.length; i++) {
+			double bitLength = (double) correlatedRate / candidates[i].getBaudRate();
+			smoothing[i] = 1 / Math.max(toneBank.windowLength(i) / 2.0, bitLength / 4);
+		}
+		runCounts = new int[candidates.length][maxRunLength + 1];
+		lastBits = new boolean[candidates.length];
+		runLengths = new int[candidates.length];
+		runFitSums = new double[candidates.length];
+	}
+
+	/**
+	 * Sets how much audio is scanned after the leading silence. Longer scans tell close profiles
+	 * apart more reliably under noise; the channel seizure of a frame is all a scan needs.
+	 *
+	 * @param scanMillis scan length in milliseconds. Defaults to {@value #DEFAULT_SCAN_MILLIS}.
+	 */
+	public void setScanMillis(int scanMillis) {
+		if (scanMillis <= 0) {
+			throw new IllegalArgumentException("scanMillis must be positive: " + scanMillis);
+		}
+		scanSamples = (int) ((long) scanMillis * candidates[0].getSampleRate() / 1000);
+	}
+
+	/**
+	 * Detect the profile of given headerless 16-bit little-endian PCM file.
+	 *
+	 * @param pcmFile FSK encoded data in PCM File.
+	 * @return the detected profile, or null if no candidate matches
+	 * @throws Exception
+	 */
+	public FskModemProfile detect(File pcmFile) throws Exception{
+		FileInputStream pcmReader = new FileInputStream(pcmFile);
+		try {
+			return detect(pcmReader);
+		} finally {
+			pcmReader.close();
+		}
+	}
+
+	/**
+	 * Detect the profile of given headerless 16-bit little-endian PCM reader. Only the leading
+	 * silence and the scan are read. If the reader supports {@link InputStream#mark(int)}, it is
+	 * reset to where it was, so the same reader can be decoded next.
+	 *
+	 * @param pcmReader FSK encoded data reader.
+	 * @return the detected profile, or null if no candidate matches
+	 * @throws Exception
+	 */
+	public FskModemProfile detect(InputStream pcmReader) throws Exception{
+		boolean marked = pcmReader.markSupported();
+		if (marked) pcmReader.mark(Integer.MAX_VALUE);
+		try {
+			start();
+			PcmFormat format = PcmFormat.pcm16(candidates[0].getSampleRate(), 1);
+			ByteBuffer block = ByteBuffer.wrap(readBuffer).order(format.getByteOrder());
+			int remaining = -1;
+			int read;
+			// never read more than the scan still needs, nor more than one scan while the silence lasts
+			while (remaining != 0 && (read = pcmReader.read(readBuffer, block.position(), 
+					Math.min(block.remaining(), (remaining < 0 ? scanSamples : remaining) * 2 - block.position()))) != -1) {
+				block.position(block.position() + read);
+				block.flip();
+				int count = block.remaining() / 2;
+				for (int i = 0; i < count; i++) {
+					sampleBuffer[i] = format.sample(block, block.position() + i * 2);
+				}
+				block.position(block.position() + count * 2);
+				remaining = scan(sampleBuffer, 0, count, remaining);
+				block.compact();
+			}
+			return choose();
+		} finally {
+			if (marked) pcmReader.reset();
+		}
+	}
+
+	/**
+	 * Detect the profile of given 16-bit PCM samples.
+	 *
+	 * @param samples 16-bit PCM samples
+	 * @param off index of the first sample
+	 * @param len number of samples
+	 * @return the detected profile, or null if no candidate matches
+	 */
+	public FskModemProfile detect(short[] samples, int off, int len) {
+		start();
+		scan(samples, off, len, -1);
+		return choose();
+	}
+
+	/**
+	 * @return tone fit of the best candidate of a matching baud rate in the last detection, whether
+	 * or not it reached {@value #MIN_TONE_FIT}; 0 if no baud rate matched
+	 */
+	public double getToneFit() {
+		return toneFit;
+	}
+
+	/**
+	 * @return baud rate measured for the candidate of {@link #getToneFit()}
+	 */
+	public double getBaudRate() {
+		return baudRate;
+	}
+
+	private void start() {
+		toneBank.reset();
+		Arrays.fill(toneEnergySums, 0);
+		Arrays.fill(windowPowerSums, 0);
+		Arrays.fill(contrasts, 0);
+		for (int[] counts : runCounts) {
+			Arrays.fill(counts, 0);
+		}
+		Arrays.fill(lastBits, false);
+		Arrays.fill(runLengths, 0);
+		Arrays.fill(runFitSums, 0);
+		toneFit = 0;
+		baudRate = 0;
+	}
+
+	/**
+	 * Feeds samples to the tone bank, skipping the leading silence.
+	 *
+	 * @param remaining number of samples left to scan, or -1 while the leading silence lasts
+	 * @return number of samples left to scan after these
+	 */
+	private int scan(short[] samples, int off, int len, int remaining) {
+		int end = off + len;
+		for (int i = off; i < end && remaining != 0; i++) {
+			if (remaining < 0) {
+				if (samples[i] == 0) continue;
+				remaining = scanSamples;
+			}
+			remaining--;
+			if (toneBank.add(samples[i])) {
+				correlated();
+			}
+		}
+		return remaining;
+	}
+
+	private void correlated() {
+		for (int i = 0; i < candidates.length; i++) {
+			double toneEnergy = toneBank.toneEnergy(i);
+			double windowPower = toneBank.windowPower(i);
+			toneEnergySums[i] += toneEnergy;
+			windowPowerSums[i] += windowPower;
+
+			double markEnergy = toneBank.markEnergy(i);
+			double spaceEnergy = toneBank.spaceEnergy(i);
+			if (markEnergy + spaceEnergy > 0) {
+				contrasts[i] += ((markEnergy - spaceEnergy) / (markEnergy + spaceEnergy) - contrasts[i]) * smoothing[i];
+			}
+			boolean bit = contrasts[i] > 0;
+			if (bit != lastBits[i]) {
+				if (runLengths[i] >= minRunLength && runLengths[i] <= maxRunLength 
+						&& runFitSums[i] >= MIN_TONE_FIT * runLengths[i]) {
+					runCounts[i][runLengths[i]]++;
+				}
+				runLengths[i] = 0;
+				runFitSums[i] = 0;
+				lastBits[i] = bit;
+			}
+			runLengths[i]++;
+			if (windowPower > 0) runFitSums[i] += toneEnergy / windowPower;
+		}
+	}
+
+	private FskModemProfile choose() {
+		FskModemProfile detected = null;
+		double bestFit = -1;
+		for (int i = 0; i < candidates.length; i++) {
+			double fit = toneFit(i);
+			double measuredBaudRate = measuredBaudRate(runCounts[i]);
+			boolean baudMatches = Math.abs(measuredBaudRate - candidates[i].getBaudRate()) <= BAUD_TOLERANCE * candidates[i].getBaudRate();
+			if (logger.isLoggable(Level.FINE)) logger.log(Level.FINE, candidates[i] + ": tone fit " + fit
+					+ ", baud rate " + measuredBaudRate);
+			if (baudMatches && fit > bestFit) {
+				bestFit = fit;
+				toneFit = fit;
+				baudRate = measuredBaudRate;
+				detected = candidates[i];
+			}
+		}
+		if (bestFit < MIN_TONE_FIT) {
+			return null;
+		}
+		return detected;
+	}
+
+	/**
+	 * Returns the share of the scanned power explained by the tones of a candidate. White noise 
+	 * alone would fit about 2 / N of it, for a window of N samples, so that share is taken out.
+	 */
+	private double toneFit(int candidate) {
+		if (windowPowerSums[candidate] == 0) return 0;
+		double noiseFit = 2.0 / toneBank.windowLength(candidate);
+		return (toneEnergySums[candidate] / windowPowerSums[candidate] - noiseFit) / (1 - noiseFit);
+	}
+
+	/**
+	 * Takes the most common run length as one bit, and refines it with the mean of the runs within
+	 * half a bit of it.
+	 *
+	 * @return bits per second, or 0 if no run was counted
+	 */
+	private double measuredBaudRate(int counts[]) {
+		int bitLength = minRunLength;
+		for (int length = minRunLength + 1; length <= maxRunLength; length++) {
+			if (counts[length] > counts[bitLength]) bitLength = length;
+		}
+		if (counts[bitLength] == 0) return 0;
+		long runs = 0, samples = 0;
+		for (int length = Math.max(minRunLength, (bitLength + 1) / 2); length <= Math.min(maxRunLength, bitLength * 3 / 2); length++) {
+			runs += counts[length];
+			samples += (long) counts[length] * length;
+		}
+		return (double) correlatedRate * runs / samples;
+	}
+}
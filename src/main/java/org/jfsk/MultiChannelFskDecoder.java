@@ -0,0 +1,258 @@
+package org.jfsk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decodes recordings holding one line per channel, such as stereo or 8-channel interleaved PCM,
+ * in a single pass over the data.
+ *
+ * Every channel has its own {@link FskDecoder}, so each line is demodulated and framed
+ * independently. Each block read from the recording is deinterleaved once into per-channel sample
+ * buffers, and every decoder then runs over its own buffer. Decoding is continuous, as with
+ * {@link FskDecoder#decodeFrames(InputStream)}, and every frame is tagged with
+ * {@link FskFrame#getChannel()}. Sample offsets count samples of one channel.
+ *
+ * Decoders are not thread safe; call {@link #reset()} before reusing one for another recording.
+ *
+ *<pre> {@code
+ *  MultiChannelFskDecoder decoder = new MultiChannelFskDecoder(FskModemProfile.CUSTOM_EXAMPLE, 8);
+ *  for (FskFrame frame : decoder.decodeFrames(new File("/path/to/8-channel.pcm"))) {
+ *      lines[frame.getChannel()].accept(frame.getData());
+ *  }
+ * }</pre>
+ */
+public class MultiChannelFskDecoder {
+	private static final int MAPPED_WINDOW_SIZE = 64 * 1024 * 1024;
+	private static final int CHUNK_SAMPLES = 2048;
+
+	private final FskModemProfile profile;
+	private final FskDecoder[] decoders;
+	private final FrameListener[] listeners;
+	private final List<FskFrame> frames = new ArrayList<FskFrame>();
+
+	private final byte[] readBuffer = new byte[FskDecoder.READ_BUFFER_SIZE];
+	private final short[][] channelSamples;
+
+	/**
+	 * @param profile modem and sample rate of every channel
+	 * @param channels number of interleaved channels
+	 */
+	public MultiChannelFskDecoder(FskModemProfile profile, int channels) {
+		this(profile, CorrelatorEngine.BRUTE_FORCE, channels);
+	}
+
+	/**
+	 * @param profile modem and sample rate of every channel
+	 * @param engine correlator engine of the channel decoders
+	 * @param channels number of interleaved channels
+	 */
+	public MultiChannelFskDecoder(FskModemProfile profile, CorrelatorEngine engine, int channels) {
+		if (channels <= 0) {
+			throw new IllegalArgumentException("channels must be positive: " + channels);
+		}
+		this.profile = profile;
+		decoders = new FskDecoder[channels];
+		listeners = new FrameListener[channels];
+		channelSamples = new short[channels][CHUNK_SAMPLES];
+		for (int channel = 0; channel < channels; channel++) {
+			decoders[channel] = new FskDecoder(profile, engine);
+			listeners[channel] = new ChannelListener(channel);
+			decoders[channel].setFrameListener(listeners[channel]);
+		}
+	}
+
+	/**
+	 * @return number of interleaved channels
+	 */
+	public int getChannels() {
+		return decoders.length;
+	}
+
+	/**
+	 * Restores every channel decoder to the state it had right after construction.
+	 */
+	public void reset() {
+		for (int channel = 0; channel < decoders.length; channel++) {
+			decoders[channel].reset();
+			decoders[channel].setFrameListener(listeners[channel]);
+		}
+		frames.clear();
+	}
+
+	/**
+	 * Decode every frame of every channel of given headerless, interleaved 16-bit little-endian
+	 * PCM file.
+	 *
+	 * @param pcmFile FSK encoded data in an interleaved PCM file.
+	 * @return decoded frames, ordered by sample offset then channel
+	 * @throws Exception
+	 */
+	public List<FskFrame> decodeFrames(File pcmFile) throws Exception{
+		FileInputStream pcmReader = new FileInputStream(pcmFile);
+		try {
+			return decodeFrames(pcmReader);
+		} finally {
+			pcmReader.close();
+		}
+	}
+
+	/**
+	 * Decode every frame of every channel of given headerless, interleaved 16-bit little-endian
+	 * PCM reader. The reader is consumed in blocks, so it does not need to be buffered by the caller.
+	 *
+	 * @param pcmReader FSK encoded data reader.
+	 * @return decoded frames, ordered by sample offset then channel
+	 * @throws Exception
+	 */
+	public List<FskFrame> decodeFrames(InputStream pcmReader) throws Exception{
+		return read(pcmReader, PcmFormat.pcm16(profile.getSampleRate(), decoders.length));
+	}
+
+	/**
+	 * Decode every frame of every channel of given WAV or AIFF file, streaming it in blocks.
+	 *
+	 * @param audioFile FSK encoded data in a WAV or AIFF file.
+	 * @return decoded frames, ordered by sample offset then channel
+	 * @throws IllegalArgumentException if the sample rate or channel count of the file does not match
+	 * @throws Exception
+	 * @see FskDecoder#decodeAudio(File)
+	 */
+	public List<FskFrame> decodeAudioFrames(File audioFile) throws Exception{
+		FileInputStream audioReader = new FileInputStream(audioFile);
+		try {
+			return read(audioReader, checkFormat(PcmFormat.read(audioReader)));
+		} finally {
+			audioReader.close();
+		}
+	}
+
+	/**
+	 * Decode every frame of every channel of given WAV or AIFF file by memory mapping its sample
+	 * data, in windows of at most {@value #MAPPED_WINDOW_SIZE} bytes.
+	 *
+	 * @param audioFile FSK encoded data in a WAV or AIFF file.
+	 * @return decoded frames, ordered by sample offset then channel
+	 * @throws IllegalArgumentException if the sample rate or channel count of the file does not match
+	 * @throws Exception
+	 * @see FskDecoder#decodeAudio(Path)
+	 */
+	public List<FskFrame> decodeAudioFrames(Path audioFile) throws Exception{
+		FileChannel channel = FileChannel.open(audioFile, StandardOpenOption.READ);
+		try {
+			PcmFormat format = checkFormat(PcmFormat.read(Channels.newInputStream(channel)));
+			int frameSize = format.getFrameSize();
+			long maxWindowSize = MAPPED_WINDOW_SIZE / frameSize * frameSize;
+			long position = format.getDataOffset();
+			long end = position + Math.min(format.getDataLength(), channel.size() - position);
+			while (end - position >= frameSize) {
+				long windowSize = Math.min(maxWindowSize, (end - position) / frameSize * frameSize);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, windowSize);
+				window.order(format.getByteOrder());
+				decodeBlock(window, format);
+				position += windowSize;
+			}
+			return collectFrames();
+		} finally {
+			frames.clear();
+			channel.close();
+		}
+	}
+
+	private PcmFormat checkFormat(PcmFormat format) throws IOException {
+		if (format.getSampleRate() != profile.getSampleRate() || format.getChannels() != decoders.length) {
+			throw new IllegalArgumentException("Audio has " + format.getChannels() + " channels at " + format.getSampleRate()
+					+ " Hz, decoder expects " + decoders.length + " channels at " + profile.getSampleRate() + " Hz");
+		}
+		if (format.getFrameSize() > readBuffer.length) {
+			throw new IOException("Too many channels: " + format.getChannels());
+		}
+		return format;
+	}
+
+	private List<FskFrame> read(InputStream reader, PcmFormat format) throws Exception{
+		ByteBuffer block = ByteBuffer.wrap(readBuffer).order(format.getByteOrder());
+		long remaining = format.getDataLength();
+		int read;
+		try {
+			while (remaining > 0 && (read = reader.read(readBuffer, block.position(), (int) Math.min(block.remaining(), remaining))) != -1) {
+				remaining -= read;
+				block.position(block.position() + read);
+				block.flip();
+				decodeBlock(block, format);
+				block.compact();
+			}
+			return collectFrames();
+		} finally {
+			frames.clear();
+		}
+	}
+
+	/**
+	 * Deinterleaves the whole frames remaining in the buffer, {@value #CHUNK_SAMPLES} at a time,
+	 * and runs each channel through its decoder. Leaves the buffer positioned after the last
+	 * frame consumed.
+	 */
+	private void decodeBlock(ByteBuffer samples, PcmFormat format) {
+		int frameSize = format.getFrameSize();
+		int sampleSize = format.getBitsPerSample() / 8;
+		int channels = decoders.length;
+		int index = samples.position();
+		while (samples.limit() - index >= frameSize) {
+			int count = Math.min(CHUNK_SAMPLES, (samples.limit() - index) / frameSize);
+			for (int i = 0; i < count; i++) {
+				for (int channel = 0; channel < channels; channel++) {
+					channelSamples[channel][i] = format.sample(samples, index + channel * sampleSize);
+				}
+				index += frameSize;
+			}
+			for (int channel = 0; channel < channels; channel++) {
+				decoders[channel].feed(channelSamples[channel], 0, count);
+			}
+		}
+		samples.position(index);
+	}
+
+	/**
+	 * @return the frames collected by the channel listeners, sorted. The callers clear them, even 
+	 * when decoding fails, so no frame leaks into the next call.
+	 */
+	private List<FskFrame> collectFrames() {
+		List<FskFrame> result = new ArrayList<FskFrame>(frames);
+		Collections.sort(result, new Comparator<FskFrame>() {
+			@Override
+			public int compare(FskFrame a, FskFrame b) {
+				if (a.getSampleOffset() != b.getSampleOffset()) {
+					return a.getSampleOffset() < b.getSampleOffset() ? -1 : 1;
+				}
+				return a.getChannel() - b.getChannel();
+			}
+		});
+		return result;
+	}
+
+	private class ChannelListener implements FrameListener {
+		private final int channel;
+
+		ChannelListener(int channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void onFrame(FskFrame frame) {
+			frames.add(new FskFrame(frame.getData(), frame.getSampleOffset(), frame.getInvalidCodeCount(), channel, frame.getProfile()));
+		}
+	}
+}
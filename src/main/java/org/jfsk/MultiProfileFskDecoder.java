@@ -0,0 +1,358 @@
+package org.jfsk;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decodes recordings whose modem is not known in advance by listening for several modem profiles
+ * at once, in a single pass over the data.
+ *
+ * All profiles share one sample ring buffer, one silence detector and, for high-rate captures, one
+ * decimator. Each distinct tone is correlated once per sample, so profiles whose mark or space
+ * tones coincide, such as the two forward modes of V.23 which both mark at 1300 Hz, share that work.
+ * Tones are correlated with a single-bin sliding DFT, as {@link CorrelatorEngine#SLIDING_DFT} does,
+ * so each costs the same whatever its window and the long windows of slow modems add nothing.
+ * Every profile then frames its own bit decisions.
+ *
+ * A profile often syncs on audio of another: the custom example modem, for one, frames Bell 202
+ * and V.23 mode 1 signals too. When frames of several profiles overlap in time, only one is
+ * reported: the one with the fewest invalid codes, then the one whose tones stood out most clearly
+ * over the frame, then the profile given first. A frame is therefore reported once every profile
+ * that synced during it has completed or dropped its own frame. Frames are tagged with the profile
+ * that decoded them, see {@link FskFrame#getProfile()}.
+ *
+ * Decoding is continuous, as with {@link FskDecoder#decodeFrames(InputStream)}. Decoders are not
+ * thread safe; call {@link #reset()} before reusing one for another recording.
+ *
+ *<pre> {@code
+ *  MultiProfileFskDecoder decoder = new MultiProfileFskDecoder(8000);
+ *  for (FskFrame frame : decoder.decodeFrames(new File("/path/to/capture.pcm"))) {
+ *      handlers.get(frame.getProfile()).accept(frame.getData());
+ *  }
+ * }</pre>
+ */
+public class MultiProfileFskDecoder {
+	private static final int CHUNK_SAMPLES = 2048;
+
+	private final List<FskModemProfile> profiles;
+	private final FskDecoder[] decoders;
+	private final ToneBank toneBank;
+	private final int trailingZeroesLimit;
+	private final boolean synchronizedProfiles[];
+	private final long syncOffsets[];          // sample offset of the frame each synchronized profile is receiving
+	private final double contrastSums[];       // tone contrast summed over the frame each profile is receiving
+	private final int contrastCounts[];
+	private FskFrame pendingFrame;             // best of the frames overlapping the last one completed
+	private double pendingContrast;
+	private int pendingProfile;
+	private long pendingEnd;                   // sample position at which pendingFrame completed
+	private boolean skippingLeadingZeroes = true;
+	private int trailingZeroes;
+	private long samplePosition;
+
+	private final FrameListener profileListeners[];
+	private FrameListener frameListener;
+
+	private final byte[] readBuffer = new byte[FskDecoder.READ_BUFFER_SIZE];
+	private final short[] sampleBuffer = new short[CHUNK_SAMPLES];
+
+	/**
+	 * Creates a decoder listening for every predefined profile of {@link FskModemProfile} at the
+	 * given sample rate.
+	 *
+	 * @param sampleRate sample rate of the PCM data
+	 */
+	public MultiProfileFskDecoder(int sampleRate) {
+		this(FskModemProfile.V23_FORWARD_MODE1.withSampleRate(sampleRate),
+				FskModemProfile.V23_FORWARD_MODE2.withSampleRate(sampleRate),
+				FskModemProfile.V23_BACKWARD.withSampleRate(sampleRate),
+				FskModemProfile.BELL202.withSampleRate(sampleRate),
+				FskModemProfile.CUSTOM_EXAMPLE.withSampleRate(sampleRate));
+	}
+
+	/**
+	 * Creates a decoder listening for the given profiles, in order of preference.
+	 *
+	 * @param profiles modems to listen for, all at the sample rate of the PCM data
+	 * @throws IllegalArgumentException if no profile is given or the sample rates differ
+	 */
+	public MultiProfileFskDecoder(FskModemProfile... profiles) {
+		toneBank = new ToneBank(profiles);
+		this.profiles = Collections.unmodifiableList(Arrays.asList(profiles.clone()));
+		trailingZeroesLimit = (int) ((long) FskDecoder.SILENCE_SAMPLES * profiles[0].getSampleRate() / FskDecoder.SAMPLE_RATE);
+
+		decoders = new FskDecoder[profiles.length];
+		profileListeners = new FrameListener[profiles.length];
+		synchronizedProfiles = new boolean[profiles.length];
+		syncOffsets = new long[profiles.length];
+		contrastSums = new double[profiles.length];
+		contrastCounts = new int[profiles.length];
+		for (int i = 0; i < profiles.length; i++) {
+			decoders[i] = new FskDecoder(profiles[i], toneBank.getDownsamplingCount());
+			profileListeners[i] = new ProfileListener(i);
+			decoders[i].setFrameListener(profileListeners[i]);
+		}
+	}
+
+	/**
+	 * @return profiles listened for, in order of preference
+	 */
+	public List<FskModemProfile> getProfiles() {
+		return profiles;
+	}
+
+	/**
+	 * @return number of tones correlated per sample, at most twice the number of profiles
+	 */
+	public int getToneCount() {
+		return toneBank.getToneCount();
+	}
+
+	/**
+	 * Sets how many invalid 6-bit codes a frame of any profile may hold before it is rejected. 
+	 * Frames a profile decodes from the audio of another usually hold many.
+	 *
+	 * @param maxInvalidCodes maximum number of invalid codes in an accepted frame
+	 * @see FskDecoder#setMaxInvalidCodes(int)
+	 */
+	public void setMaxInvalidCodes(int maxInvalidCodes) {
+		for (FskDecoder decoder : decoders) {
+			decoder.setMaxInvalidCodes(maxInvalidCodes);
+		}
+	}
+
+	/**
+	 * Sets the largest payload accepted from the length header of a frame of any profile.
+	 *
+	 * @param maxDataSize largest payload in bytes, excluding the 2-byte length header
+	 * @see FskDecoder#setMaxDataSize(int)
+	 */
+	public void setMaxDataSize(int maxDataSize) {
+		for (FskDecoder decoder : decoders) {
+			decoder.setMaxDataSize(maxDataSize);
+		}
+	}
+
+	/**
+	 * Restores the decoder to the state it had right after construction. A frame still waiting for
+	 * overlapping frames of other profiles is dropped, the frame listener is removed and the invalid 
+	 * code and data size limits are set back to their defaults.
+	 */
+	public void reset() {
+		for (int i = 0; i < decoders.length; i++) {
+			decoders[i].reset();
+			decoders[i].setFrameListener(profileListeners[i]);
+		}
+		toneBank.reset();
+		Arrays.fill(synchronizedProfiles, false);
+		pendingFrame = null;
+		skippingLeadingZeroes = true;
+		trailingZeroes = 0;
+		samplePosition = 0;
+		frameListener = null;
+	}
+
+	/**
+	 * Decode every frame of any of the profiles encoded into given PCM file.
+	 *
+	 * @param pcmFile FSK encoded data in PCM File.
+	 * @return decoded frames, in the order they appear in the file
+	 * @throws Exception
+	 */
+	public List<FskFrame> decodeFrames(File pcmFile) throws Exception{
+		FileInputStream pcmReader = new FileInputStream(pcmFile);
+		try {
+			return decodeFrames(pcmReader);
+		} finally {
+			pcmReader.close();
+		}
+	}
+
+	/**
+	 * Decode every frame of any of the profiles encoded into given headerless 16-bit little-endian
+	 * PCM reader.
+	 *
+	 * @param pcmReader FSK encoded data reader.
+	 * @return decoded frames, in the order they appear in the reader
+	 * @throws Exception
+	 */
+	public List<FskFrame> decodeFrames(InputStream pcmReader) throws Exception{
+		FrameListener previousListener = frameListener;
+		final List<FskFrame> frames = new ArrayList<FskFrame>();
+		frameListener = new FrameListener() {
+			@Override
+			public void onFrame(FskFrame frame) {
+				frames.add(frame);
+			}
+		};
+		try {
+			PcmFormat format = PcmFormat.pcm16(profiles.get(0).getSampleRate(), 1);
+			ByteBuffer block = ByteBuffer.wrap(readBuffer).order(format.getByteOrder());
+			int read;
+			while ((read = pcmReader.read(readBuffer, block.position(), block.remaining())) != -1) {
+				block.position(block.position() + read);
+				block.flip();
+				while (block.remaining() >= 2) {
+					int count = Math.min(sampleBuffer.length, block.remaining() / 2);
+					for (int i = 0; i < count; i++) {
+						sampleBuffer[i] = format.sample(block, block.position() + i * 2);
+					}
+					block.position(block.position() + count * 2);
+					decodeSamples(sampleBuffer, 0, count);
+				}
+				block.compact();
+			}
+			flushPendingFrame();
+			return frames;
+		} finally {
+			frameListener = previousListener;
+		}
+	}
+
+	/**
+	 * Sets the listener notified by {@link #feed(short[], int, int)} whenever a frame completes.
+	 *
+	 * @param frameListener listener to notify, or null to remove the current one
+	 */
+	public void setFrameListener(FrameListener frameListener) {
+		this.frameListener = frameListener;
+	}
+
+	/**
+	 * Pushes samples into the decoder, keeping all state between calls. A frame is passed to the
+	 * listener once no other profile may still report an overlapping one, which can be after the
+	 * call that completed it.
+	 *
+	 * @param samples 16-bit PCM samples
+	 * @param off index of the first sample to decode
+	 * @param len number of samples to decode
+	 * @throws IllegalStateException if no frame listener is set
+	 * @see FskDecoder#feed(short[], int, int)
+	 */
+	public void feed(short[] samples, int off, int len) {
+		if (frameListener == null) {
+			throw new IllegalStateException("No frame listener set");
+		}
+		decodeSamples(samples, off, len);
+	}
+
+	private void decodeSamples(short[] samples, int off, int len) {
+		int end = off + len;
+		for (int i = off; i < end; i++) {
+			processSample(samples[i]);
+		}
+	}
+
+	/**
+	 * Runs one sample through the shared front end and the framing of every profile. This runs 
+	 * for every sample and must not allocate.
+	 */
+	private void processSample(short sample) {
+		samplePosition++;
+		if (skippingLeadingZeroes) {
+			if (sample == 0) return;
+			skippingLeadingZeroes = false;
+		}
+
+		if (sample == 0) trailingZeroes++;
+		else trailingZeroes = 0;
+		if (trailingZeroes == trailingZeroesLimit) {
+			restartFraming();
+			return;
+		}
+
+		if (!toneBank.add(sample)) return;
+		for (int i = 0; i < decoders.length; i++) {
+			double markEnergy = toneBank.markEnergy(i);
+			double spaceEnergy = toneBank.spaceEnergy(i);
+			decoders[i].processDecision(markEnergy > spaceEnergy, samplePosition);
+			if (decoders[i].isSynchronized()) {
+				if (!synchronizedProfiles[i]) {
+					synchronizedProfiles[i] = true;
+					syncOffsets[i] = samplePosition - 1;
+					contrastSums[i] = 0;
+					contrastCounts[i] = 0;
+				}
+				if (markEnergy + spaceEnergy > 0) {
+					contrastSums[i] += Math.abs(markEnergy - spaceEnergy) / (markEnergy + spaceEnergy);
+				}
+				contrastCounts[i]++;
+			} else {
+				synchronizedProfiles[i] = false;
+			}
+		}
+		if (pendingFrame != null && !overlapsPendingFrame()) {
+			flushPendingFrame();
+		}
+	}
+
+	/**
+	 * Drops any partially decoded frame of every profile.
+	 */
+	private void restartFraming() {
+		for (FskDecoder decoder : decoders) {
+			decoder.restartFraming();
+		}
+		Arrays.fill(synchronizedProfiles, false);
+		flushPendingFrame();
+	}
+
+	/**
+	 * @return true if a profile is receiving a frame that started before the pending frame completed
+	 */
+	private boolean overlapsPendingFrame() {
+		for (int i = 0; i < decoders.length; i++) {
+			if (synchronizedProfiles[i] && syncOffsets[i] < pendingEnd) return true;
+		}
+		return false;
+	}
+
+	private void flushPendingFrame() {
+		if (pendingFrame != null) {
+			FskFrame frame = pendingFrame;
+			pendingFrame = null;
+			if (frameListener != null) frameListener.onFrame(frame);
+		}
+	}
+
+	/**
+	 * Keeps the better of a frame just completed by a profile and the pending frame it overlaps,
+	 * or reports the pending frame first if they do not overlap.
+	 */
+	private void frameCompleted(int profile, FskFrame frame) {
+		double contrast = contrastCounts[profile] > 0 ? contrastSums[profile] / contrastCounts[profile] : 0;
+		synchronizedProfiles[profile] = false;
+		if (pendingFrame != null) {
+			if (frame.getSampleOffset() >= pendingEnd) {
+				flushPendingFrame();
+			} else if (frame.getInvalidCodeCount() > pendingFrame.getInvalidCodeCount()
+					|| frame.getInvalidCodeCount() == pendingFrame.getInvalidCodeCount()
+					&& (contrast < pendingContrast || contrast == pendingContrast && profile > pendingProfile)) {
+				return;
+			}
+		}
+		pendingFrame = frame;
+		pendingContrast = contrast;
+		pendingProfile = profile;
+		pendingEnd = samplePosition;
+	}
+
+	private class ProfileListener implements FrameListener {
+		private final int profile;
+
+		ProfileListener(int profile) {
+			this.profile = profile;
+		}
+
+		@Override
+		public void onFrame(FskFrame frame) {
+			frameCompleted(profile, frame);
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package org.jfsk;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Sample format and data location of a WAV or AIFF file, read from its header.
+ *
+ * RIFF/WAVE files with integer PCM, IEEE float or extensible format chunks are supported, as are
+ * AIFF files and AIFF-C files with uncompressed ({@code NONE}, {@code sowt}) or 32/64-bit float
+ * ({@code fl32}, {@code fl64}) data. Integer samples may be 8, 16, 24 or 32 bits, with any number
+ * of channels.
+ *
+ * The decoder correlates 16-bit samples: wider integer samples are truncated to their 16 most
+ * significant bits, and float samples are scaled from [-1, 1].
+ *
+ *<pre> {@code
+ *  PcmFormat format = PcmFormat.read(wavFile);
+ *  FskDecoder fskDecoder = new FskDecoder(FskModemProfile.BELL202.withSampleRate(format.getSampleRate()));
+ *  decodedData = fskDecoder.decodeAudio(wavFile);
+ * }</pre>
+ *
+ * @see FskDecoder#decodeAudio(File)
+ */
+public final class PcmFormat {
+	private static final int RIFF = 0x52494646;       // "RIFF"
+	private static final int WAVE = 0x57415645;       // "WAVE"
+	private static final int FMT = 0x666d7420;        // "fmt "
+	private static final int DATA = 0x64617461;       // "data"
+	private static final int FORM = 0x464f524d;       // "FORM"
+	private static final int AIFF = 0x41494646;       // "AIFF"
+	private static final int AIFC = 0x41494643;       // "AIFC"
+	private static final int COMM = 0x434f4d4d;       // "COMM"
+	private static final int SSND = 0x53534e44;       // "SSND"
+	private static final int NONE = 0x4e4f4e45;       // "NONE"
+	private static final int SOWT = 0x736f7774;       // "sowt"
+	private static final int FL32 = 0x666c3332;       // "fl32"
+	private static final int FL32_UPPER = 0x464c3332; // "FL32"
+	private static final int FL64 = 0x666c3634;       // "fl64"
+	private static final int FL64_UPPER = 0x464c3634; // "FL64"
+
+	private static final int WAVE_FORMAT_PCM = 1;
+	private static final int WAVE_FORMAT_IEEE_FLOAT = 3;
+	private static final int WAVE_FORMAT_EXTENSIBLE = 0xFFFE;
+
+	private static final int MAX_HEADER_CHUNK_SIZE = 1024;
+
+	private final int sampleRate;
+	private final int channels;
+	private final int bitsPerSample;
+	private final boolean floatingPoint;
+	private final boolean bigEndian;
+	private final long dataOffset;
+	private final long dataLength;
+
+	private PcmFormat(int sampleRate, int channels, int bitsPerSample, boolean floatingPoint, boolean bigEndian,
+			long dataOffset, long dataLength) throws IOException {
+		if (sampleRate <= 0 || channels <= 0) {
+			throw new IOException("Invalid audio format: " + sampleRate + " Hz, " + channels + " channels");
+		}
+		if (floatingPoint ? bitsPerSample != 32 && bitsPerSample != 64
+				: bitsPerSample != 8 && bitsPerSample != 16 && bitsPerSample != 24 && bitsPerSample != 32) {
+			throw new IOException("Unsupported " + (floatingPoint ? "float" : "integer") + " sample size: " + bitsPerSample + " bits");
+		}
+		this.sampleRate = sampleRate;
+		this.channels = channels;
+		this.bitsPerSample = bitsPerSample;
+		this.floatingPoint = floatingPoint;
+		this.bigEndian = bigEndian;
+		this.dataOffset = dataOffset;
+		this.dataLength = dataLength;
+	}
+
+	/**
+	 * @return the format of headerless 16-bit little-endian PCM, as read by {@link FskDecoder#decode(InputStream)}
+	 */
+	static PcmFormat pcm16(int sampleRate, int channels) {
+		try {
+			return new PcmFormat(sampleRate, channels, 16, false, false, 0, Long.MAX_VALUE);
+		} catch (IOException e) {
+			throw new IllegalArgumentException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Reads the format of a WAV or AIFF file.
+	 *
+	 * @param audioFile WAV or AIFF file
+	 * @return format of the audio data
+	 * @throws IOException if the file cannot be read or its header is not a supported format
+	 */
+	public static PcmFormat read(File audioFile) throws IOException {
+		FileInputStream in = new FileInputStream(audioFile);
+		try {
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a WAV or AIFF header, leaving the stream at the first byte of sample data.
+	 *
+	 * @param in stream positioned at the start of the file
+	 * @return format of the audio data
+	 * @throws IOException if the stream cannot be read or its header is not a supported format
+	 */
+	public static PcmFormat read(InputStream in) throws IOException {
+		HeaderReader header = new HeaderReader(in);
+		int id = header.readInt(true);
+		long formSize = header.readInt(id != RIFF) & 0xFFFFFFFFL;
+		int type = header.readInt(true);
+		if (id == RIFF && type == WAVE) {
+			return readWave(header, formSize + 8);
+		}
+		if (id == FORM && (type == AIFF || type == AIFC)) {
+			return readAiff(header, type == AIFC);
+		}
+		throw new IOException("Not a WAV or AIFF file");
+	}
+
+	/**
+	 * @param riffEnd end of the RIFF chunk, as given by its size field
+	 */
+	private static PcmFormat readWave(HeaderReader header, long riffEnd) throws IOException {
+		int formatTag = -1;
+		int channels = 0;
+		int sampleRate = 0;
+		int bitsPerSample = 0;
+		while (true) {
+			int chunkId = header.readInt(true);
+			long chunkSize = header.readInt(false) & 0xFFFFFFFFL;
+			if (chunkId == FMT) {
+				if (chunkSize < 16 || chunkSize > MAX_HEADER_CHUNK_SIZE) throw new IOException("Invalid fmt chunk size: " + chunkSize);
+				byte[] fmt = header.readBytes((int) chunkSize);
+				ByteBuffer buffer = ByteBuffer.wrap(fmt).order(ByteOrder.LITTLE_ENDIAN);
+				formatTag = buffer.getShort(0) & 0xFFFF;
+				channels = buffer.getShort(2) & 0xFFFF;
+				sampleRate = buffer.getInt(4);
+				bitsPerSample = buffer.getShort(14) & 0xFFFF;
+				if (formatTag == WAVE_FORMAT_EXTENSIBLE) {
+					if (chunkSize < 40) throw new IOException("Invalid extensible fmt chunk size: " + chunkSize);
+					formatTag = buffer.getShort(24) & 0xFFFF;   // first two bytes of the sub-format GUID
+				}
+				header.skip(chunkSize & 1);
+			} else if (chunkId == DATA) {
+				if (formatTag != WAVE_FORMAT_PCM && formatTag != WAVE_FORMAT_IEEE_FLOAT) {
+					throw new IOException(formatTag < 0 ? "data chunk before fmt chunk" : "Unsupported WAV format: " + formatTag);
+				}
+				// Writers that stream to disk may leave the size 0xFFFFFFFF, or 0 with a RIFF size that ends 
+				// at the data chunk: data then runs to the end of the file. Otherwise a size of 0 is an empty chunk.
+				boolean streamed = chunkSize == 0xFFFFFFFFL || chunkSize == 0 && header.position >= riffEnd;
+				long dataLength = streamed ? Long.MAX_VALUE : chunkSize;
+				return new PcmFormat(sampleRate, channels, bitsPerSample, formatTag == WAVE_FORMAT_IEEE_FLOAT, false,
+						header.position, dataLength);
+			} else {
+				header.skip(chunkSize + (chunkSize & 1));
+			}
+		}
+	}
+
+	private static PcmFormat readAiff(HeaderReader header, boolean compressed) throws IOException {
+		boolean haveComm = false;
+		int channels = 0;
+		int sampleRate = 0;
+		int bitsPerSample = 0;
+		boolean floatingPoint = false;
+		boolean bigEndian = true;
+		while (true) {
+			int chunkId = header.readInt(true);
+			long chunkSize = header.readInt(true) & 0xFFFFFFFFL;
+			if (chunkId == COMM) {
+				if (chunkSize < 18 || chunkSize > MAX_HEADER_CHUNK_SIZE) throw new IOException("Invalid COMM chunk size: " + chunkSize);
+				byte[] comm = header.readBytes((int) chunkSize);
+				ByteBuffer buffer = ByteBuffer.wrap(comm).order(ByteOrder.BIG_ENDIAN);
+				channels = buffer.getShort(0) & 0xFFFF;
+				bitsPerSample = buffer.getShort(6) & 0xFFFF;
+				sampleRate = (int) Math.round(extendedToDouble(buffer, 8));
+				if (compressed) {
+					if (chunkSize < 22) throw new IOException("Invalid AIFF-C COMM chunk size: " + chunkSize);
+					int compression = buffer.getInt(18);
+					if (compression == SOWT) {
+						bigEndian = false;
+					} else if (compression == FL32 || compression == FL32_UPPER || compression == FL64 || compression == FL64_UPPER) {
+						floatingPoint = true;
+					} else if (compression != NONE) {
+						throw new IOException("Unsupported AIFF-C compression: " + fourCC(compression));
+					}
+				}
+				haveComm = true;
+				header.skip(chunkSize & 1);
+			} else if (chunkId == SSND) {
+				if (!haveComm) throw new IOException("SSND chunk before COMM chunk");
+				long offset = header.readInt(true) & 0xFFFFFFFFL;
+				header.readInt(true);                  // block size
+				header.skip(offset);
+				long dataLength = chunkSize - 8 - offset;
+				if (dataLength < 0) throw new IOException("Invalid SSND chunk size: " + chunkSize);
+				return new PcmFormat(sampleRate, channels, bitsPerSample, floatingPoint, bigEndian, header.position, dataLength);
+			} else {
+				header.skip(chunkSize + (chunkSize & 1));
+			}
+		}
+	}
+
+	/**
+	 * Converts the 80-bit IEEE 754 extended precision number AIFF stores its sample rate in.
+	 */
+	private static double extendedToDouble(ByteBuffer buffer, int index) {
+		int exponent = buffer.getShort(index) & 0x7FFF;
+		long mantissa = buffer.getLong(index + 2);
+		if (exponent == 0 && mantissa == 0) return 0;
+		double value = (mantissa >>> 11) * Math.pow(2, exponent - 16383 - 52);
+		return (buffer.getShort(index) & 0x8000) != 0 ? -value : value;
+	}
+
+	private static String fourCC(int id) {
+		return new String(new char[] {(char) (id >>> 24), (char) ((id >>> 16) & 0xFF), (char) ((id >>> 8) & 0xFF), (char) (id & 0xFF)});
+	}
+
+	/**
+	 * @return sample rate in Hz
+	 */
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * @return number of interleaved channels
+	 */
+	public int getChannels() {
+		return channels;
+	}
+
+	/**
+	 * @return size of one sample of one channel, in bits
+	 */
+	public int getBitsPerSample() {
+		return bitsPerSample;
+	}
+
+	/**
+	 * @return true for IEEE float samples, false for integer samples
+	 */
+	public boolean isFloatingPoint() {
+		return floatingPoint;
+	}
+
+	/**
+	 * @return true if samples are stored most significant byte first
+	 */
+	public boolean isBigEndian() {
+		return bigEndian;
+	}
+
+	/**
+	 * @return offset of the first byte of sample data from the start of the file
+	 */
+	long getDataOffset() {
+		return dataOffset;
+	}
+
+	/**
+	 * @return length of the sample data in bytes, or {@link Long#MAX_VALUE} if it runs to the end of the file
+	 */
+	long getDataLength() {
+		return dataLength;
+	}
+
+	/**
+	 * @return size in bytes of one sample of every channel
+	 */
+	int getFrameSize() {
+		return channels * (bitsPerSample / 8);
+	}
+
+	/**
+	 * @return byte order of the samples, to set on buffers passed to {@link #sample(ByteBuffer, int)}
+	 */
+	ByteOrder getByteOrder() {
+		return bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+	}
+
+	/**
+	 * Reads one sample as 16-bit PCM. Must not allocate: it runs for every sample.
+	 *
+	 * @param buffer sample data, with the byte order of {@link #getByteOrder()}
+	 * @param index absolute index of the first byte of the sample
+	 */
+	short sample(ByteBuffer buffer, int index) {
+		if (floatingPoint) {
+			double value = bitsPerSample == 32 ? buffer.getFloat(index) : buffer.getDouble(index);
+			long scaled = Math.round(value * 32767);
+			return (short) (scaled > Short.MAX_VALUE ? Short.MAX_VALUE : scaled < Short.MIN_VALUE ? Short.MIN_VALUE : scaled);
+		}
+		switch (bitsPerSample) {
+		case 8:
+			// WAV stores 8-bit samples unsigned, AIFF signed
+			return bigEndian ? (short) (buffer.get(index) << 8) : (short) (((buffer.get(index) & 0xFF) - 128) << 8);
+		case 16:
+			return buffer.getShort(index);
+		case 24:
+			return bigEndian ? (short) ((buffer.get(index) << 8) | (buffer.get(index + 1) & 0xFF))
+					: (short) ((buffer.get(index + 2) << 8) | (buffer.get(index + 1) & 0xFF));
+		default:
+			return (short) (buffer.getInt(index) >> 16);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "PcmFormat[sampleRate=" + sampleRate + ", channels=" + channels + ", bitsPerSample=" + bitsPerSample
+				+ (floatingPoint ? ", float" : "") + (bigEndian ? ", bigEndian" : "") + "]";
+	}
+
+	/**
+	 * Reads header fields from a stream, counting the bytes consumed.
+	 */
+	private static final class HeaderReader {
+		private final InputStream in;
+		private final byte[] scratch = new byte[4];
+		long position;
+
+		HeaderReader(InputStream in) {
+			this.in = in;
+		}
+
+		int readInt(boolean bigEndian) throws IOException {
+			readFully(scratch, 4);
+			ByteBuffer buffer = ByteBuffer.wrap(scratch).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+			return buffer.getInt(0);
+		}
+
+		byte[] readBytes(int length) throws IOException {
+			byte[] bytes = new byte[length];
+			readFully(bytes, length);
+			return bytes;
+		}
+
+		void skip(long length) throws IOException {
+			long remaining = length;
+			while (remaining > 0) {
+				long skipped = in.skip(remaining);
+				if (skipped <= 0) {
+					if (in.read() == -1) throw new EOFException("Audio header truncated");
+					skipped = 1;
+				}
+				remaining -= skipped;
+			}
+			position += length;
+		}
+
+		private void readFully(byte[] bytes, int length) throws IOException {
+			int offset = 0;
+			while (offset < length) {
+				int read = in.read(bytes, offset, length - offset);
+				if (read == -1) throw new EOFException(position + offset == 0 ? "Empty audio file" : "Audio header truncated");
+				offset += read;
+			}
+			position += length;
+		}
+	}
+}
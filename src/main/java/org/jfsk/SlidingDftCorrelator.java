@@ -0,0 +1,96 @@
+package org.jfsk;
+
+import java.util.Arrays;
+
+/**
+ * Correlator that keeps the mark and space correlations as running sums and updates them in O(1) 
+ * per sample, using a single-bin sliding DFT for each tone.
+ * 
+ * When a sample leaves the window its contribution is removed, the sums are rotated by one sample 
+ * and the new sample is added with the coefficient of the last window position. This produces the 
+ * same energies as {@link BruteForceCorrelator}, up to rounding. Rounding error accumulates in the 
+ * recursion, so the sums are recomputed from the window every {@value #RENORMALISE_INTERVAL} samples.
+ */
+class SlidingDftCorrelator implements FskCorrelator {
+	private static final int RENORMALISE_INTERVAL = 1024;
+
+	private final double handleCorrelates[][];
+	private final double handleBuffer[];
+	private final int handleCorrSize;
+	private int handleRingStart = 0;
+	private int samplesSinceRenormalise = 0;
+
+	// rotation by one sample and the coefficient of the newest sample, per tone
+	private final double markRotCos, markRotSin, markLastCos, markLastSin;
+	private final double spaceRotCos, spaceRotSin, spaceLastCos, spaceLastSin;
+
+	// running correlations, laid out as in handleCorrelates: mark sin, mark cos, space sin, space cos
+	private double markSin, markCos, spaceSin, spaceCos;
+
+	SlidingDftCorrelator(CorrelatorTables tables) {
+		this.handleCorrelates = tables.correlates;
+		this.handleCorrSize = handleCorrelates[0].length;
+		this.handleBuffer = new double[handleCorrSize];
+
+		markRotCos = Math.cos(tables.phiMark);
+		markRotSin = Math.sin(tables.phiMark);
+		spaceRotCos = Math.cos(tables.phiSpace);
+		spaceRotSin = Math.sin(tables.phiSpace);
+		markLastSin = handleCorrelates[0][handleCorrSize - 1];
+		markLastCos = handleCorrelates[1][handleCorrSize - 1];
+		spaceLastSin = handleCorrelates[2][handleCorrSize - 1];
+		spaceLastCos = handleCorrelates[3][handleCorrSize - 1];
+	}
+
+	@Override
+	public boolean isMark(short sample) {
+		double val = (double) sample / 32768;
+		double oldest = handleBuffer[handleRingStart];
+		handleBuffer[handleRingStart++] = val;
+		if (handleRingStart >= handleCorrSize) {
+			handleRingStart = 0;
+		}
+
+		if (++samplesSinceRenormalise >= RENORMALISE_INTERVAL) {
+			renormalise();
+		} else {
+			// the oldest sample sat at window position 0, where sin is 0 and cos is 1
+			double c = markCos - oldest;
+			double s = markSin;
+			markCos = c * markRotCos + s * markRotSin + val * markLastCos;
+			markSin = s * markRotCos - c * markRotSin + val * markLastSin;
+
+			c = spaceCos - oldest;
+			s = spaceSin;
+			spaceCos = c * spaceRotCos + s * spaceRotSin + val * spaceLastCos;
+			spaceSin = s * spaceRotCos - c * spaceRotSin + val * spaceLastSin;
+		}
+
+		return (markSin * markSin + markCos * markCos > spaceSin * spaceSin + spaceCos * spaceCos);
+	}
+
+	@Override
+	public void reset() {
+		Arrays.fill(handleBuffer, 0);
+		handleRingStart = 0;
+		samplesSinceRenormalise = 0;
+		markSin = markCos = spaceSin = spaceCos = 0;
+	}
+
+	private void renormalise() {
+		markSin = markCos = spaceSin = spaceCos = 0;
+		int j = handleRingStart;
+		for (int i = 0; i < handleCorrSize; i++) {
+			if (j >= handleCorrSize) {
+				j = 0;
+			}
+			double val = handleBuffer[j];
+			markSin += handleCorrelates[0][i] * val;
+			markCos += handleCorrelates[1][i] * val;
+			spaceSin += handleCorrelates[2][i] * val;
+			spaceCos += handleCorrelates[3][i] * val;
+			j++;
+		}
+		samplesSinceRenormalise = 0;
+	}
+}
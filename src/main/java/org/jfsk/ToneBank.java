@@ -0,0 +1,240 @@
+package org.jfsk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Correlates the mark and space tones of several modem profiles over one shared sample ring
+ * buffer, behind one shared decimator.
+ *
+ * Each distinct tone is correlated once per sample, so profiles whose tones coincide share that
+ * work. Tones are correlated with a single-bin sliding DFT, as {@link SlidingDftCorrelator} does,
+ * so each costs the same whatever its window. Rounding error accumulates in the recursion, so the
+ * sums are recomputed from the window every {@value #RENORMALISE_INTERVAL} samples.
+ *
+ * @see MultiProfileFskDecoder
+ * @see FskProfileDetector
+ */
+final class ToneBank {
+	private static final int RENORMALISE_INTERVAL = 1024;
+
+	private final int downsamplingCount;
+	private final Tone[] tones;                // distinct tones of all profiles
+	private final Tone[] markTones;            // tone of the mark frequency of each profile
+	private final Tone[] spaceTones;           // tone of the space frequency of each profile
+	private final Decimator decimator;         // null when samples are correlated at the input rate
+	private final double handleBuffer[];       // shared window, kept twice over so it is always one contiguous slice
+	private final int handleWindowSize;        // longest correlation window of all profiles, plus the sample leaving it
+	private int handleRingStart;
+	private int samplesSinceRenormalise;
+
+	/**
+	 * @param profiles profiles to correlate the tones of, all at the same sample rate
+	 * @throws IllegalArgumentException if no profile is given or the sample rates differ
+	 */
+	ToneBank(FskModemProfile[] profiles) {
+		if (profiles.length == 0) {
+			throw new IllegalArgumentException("No profile given");
+		}
+		int sampleRate = profiles[0].getSampleRate();
+		int downsamplingCount = Integer.MAX_VALUE;
+		FskModemProfile highestProfile = profiles[0];
+		for (FskModemProfile profile : profiles) {
+			if (profile.getSampleRate() != sampleRate) {
+				throw new IllegalArgumentException("Profiles sampled at " + sampleRate + " and " + profile.getSampleRate() + " Hz");
+			}
+			downsamplingCount = Math.min(downsamplingCount, FskDecoder.downsamplingCount(profile));
+			if (maxTone(profile) > maxTone(highestProfile)) highestProfile = profile;
+		}
+		this.downsamplingCount = downsamplingCount;
+
+		// one decimator for all, filtering for the highest tone and decimating no more than the densest profile allows
+		double decimationTaps[] = CorrelatorTables.get(highestProfile.getFreqMark(), highestProfile.getFreqSpace(),
+				sampleRate, downsamplingCount).decimationTaps;
+		decimator = decimationTaps != null ? new Decimator(decimationTaps, downsamplingCount) : null;
+
+		markTones = new Tone[profiles.length];
+		spaceTones = new Tone[profiles.length];
+		List<Tone> distinctTones = new ArrayList<Tone>();
+		int windowSize = 0;
+		for (int i = 0; i < profiles.length; i++) {
+			FskModemProfile profile = profiles[i];
+			CorrelatorTables tables = CorrelatorTables.get(profile.getFreqMark(), profile.getFreqSpace(), sampleRate, downsamplingCount);
+			markTones[i] = tone(distinctTones, profile.getFreqMark(), tables.phiMark, tables.correlates[0], tables.correlates[1]);
+			spaceTones[i] = tone(distinctTones, profile.getFreqSpace(), tables.phiSpace, tables.correlates[2], tables.correlates[3]);
+			windowSize = Math.max(windowSize, tables.correlates[0].length);
+		}
+		tones = distinctTones.toArray(new Tone[distinctTones.size()]);
+		handleWindowSize = windowSize + 1;
+		handleBuffer = new double[handleWindowSize * 2];
+	}
+
+	private static int maxTone(FskModemProfile profile) {
+		return Math.max(profile.getFreqMark(), profile.getFreqSpace());
+	}
+
+	/**
+	 * Returns the tone of given frequency correlated over a window of given length, adding it to
+	 * the distinct tones if no profile uses it yet.
+	 */
+	private static Tone tone(List<Tone> distinctTones, int freq, double phi, double sinTable[], double cosTable[]) {
+		for (Tone tone : distinctTones) {
+			if (tone.freq == freq && tone.sinTable.length == sinTable.length) return tone;
+		}
+		Tone tone = new Tone(freq, phi, sinTable, cosTable);
+		distinctTones.add(tone);
+		return tone;
+	}
+
+	/**
+	 * @return number of input samples per correlated sample, common to all profiles
+	 */
+	int getDownsamplingCount() {
+		return downsamplingCount;
+	}
+
+	/**
+	 * @return number of distinct tones correlated per sample
+	 */
+	int getToneCount() {
+		return tones.length;
+	}
+
+	/**
+	 * Pushes one input sample through the decimator and, if it yields a sample, correlates every
+	 * tone with the window ending at it. This runs for every sample and must not allocate.
+	 *
+	 * @return true if the tones were correlated with a new sample
+	 */
+	boolean add(short sample) {
+		if (decimator != null) {
+			if (!decimator.add(sample)) return false;
+			sample = decimator.output();
+		}
+		double val = (double) sample / 32768;
+		handleBuffer[handleRingStart] = val;
+		handleBuffer[handleRingStart + handleWindowSize] = val;
+		if (++handleRingStart >= handleWindowSize) {
+			handleRingStart = 0;
+		}
+		int windowEnd = handleRingStart + handleWindowSize;
+
+		if (++samplesSinceRenormalise >= RENORMALISE_INTERVAL) {
+			for (Tone tone : tones) {
+				tone.renormalise(handleBuffer, windowEnd);
+			}
+			samplesSinceRenormalise = 0;
+		} else {
+			for (Tone tone : tones) {
+				tone.update(handleBuffer, windowEnd);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return energy of the mark tone of given profile over its window
+	 */
+	double markEnergy(int profile) {
+		return markTones[profile].energy;
+	}
+
+	/**
+	 * @return energy of the space tone of given profile over its window
+	 */
+	double spaceEnergy(int profile) {
+		return spaceTones[profile].energy;
+	}
+
+	/**
+	 * @return length of the correlation window of given profile, in correlated samples
+	 */
+	int windowLength(int profile) {
+		return markTones[profile].sinTable.length;
+	}
+
+	/**
+	 * @return power of the samples in the correlation window of given profile
+	 */
+	double windowPower(int profile) {
+		return markTones[profile].power;
+	}
+
+	/**
+	 * @return energy of the stronger tone of given profile, scaled to compare with 
+	 * {@link #windowPower(int)}: a clean tone of the profile has as much of one as of the other
+	 */
+	double toneEnergy(int profile) {
+		return 2 * Math.max(markTones[profile].energy, spaceTones[profile].energy) / markTones[profile].sinTable.length;
+	}
+
+	void reset() {
+		if (decimator != null) decimator.reset();
+		Arrays.fill(handleBuffer, 0);
+		handleRingStart = 0;
+		samplesSinceRenormalise = 0;
+		for (Tone tone : tones) {
+			tone.reset();
+		}
+	}
+
+	/**
+	 * A single-bin sliding DFT of one tone over the newest samples of the shared window, along
+	 * with the power of those samples.
+	 */
+	private static final class Tone {
+		final int freq;
+		final double sinTable[];
+		final double cosTable[];
+		private final double rotCos, rotSin, lastCos, lastSin;  // rotation by one sample and coefficient of the newest sample
+		private double sin, cos;
+		double energy;
+		double power;
+
+		Tone(int freq, double phi, double sinTable[], double cosTable[]) {
+			this.freq = freq;
+			this.sinTable = sinTable;
+			this.cosTable = cosTable;
+			rotCos = Math.cos(phi);
+			rotSin = Math.sin(phi);
+			lastSin = sinTable[sinTable.length - 1];
+			lastCos = cosTable[cosTable.length - 1];
+		}
+
+		/**
+		 * Slides the window by the newest sample, at index windowEnd - 1 of the buffer.
+		 */
+		void update(double buffer[], int windowEnd) {
+			double val = buffer[windowEnd - 1];
+			double oldest = buffer[windowEnd - sinTable.length - 1];
+			// the oldest sample sat at window position 0, where sin is 0 and cos is 1
+			double c = cos - oldest;
+			double s = sin;
+			cos = c * rotCos + s * rotSin + val * lastCos;
+			sin = s * rotCos - c * rotSin + val * lastSin;
+			energy = sin * sin + cos * cos;
+			power += val * val - oldest * oldest;
+		}
+
+		/**
+		 * Correlates the tone with the window ending before index windowEnd of the buffer.
+		 */
+		void renormalise(double buffer[], int windowEnd) {
+			int corrSize = sinTable.length;
+			int start = windowEnd - corrSize;
+			sin = cos = power = 0;
+			for (int i = 0; i < corrSize; i++) {
+				double v = buffer[start + i];
+				sin += sinTable[i] * v;
+				cos += cosTable[i] * v;
+				power += v * v;
+			}
+			energy = sin * sin + cos * cos;
+		}
+
+		void reset() {
+			sin = cos = energy = power = 0;
+		}
+	}
+}
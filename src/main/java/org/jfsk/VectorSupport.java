@@ -0,0 +1,69 @@
+package org.jfsk;
+
+import java.lang.reflect.Constructor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Looks up the optional {@code VectorCorrelator} and {@code FloatVectorCorrelator} once per
+ * process. The classes are only present when the library is built with the {@code vector}
+ * profile, and only load on a JVM started with {@code --add-modules jdk.incubator.vector}.
+ */
+final class VectorSupport {
+	private static final Logger logger = Logger.getLogger(VectorSupport.class.getName());
+
+	private static final Constructor<?> VECTOR_CORRELATOR = findCorrelator("org.jfsk.VectorCorrelator");
+	private static final Constructor<?> FLOAT_VECTOR_CORRELATOR = findCorrelator("org.jfsk.FloatVectorCorrelator");
+
+	private VectorSupport() {
+	}
+
+	/**
+	 * @return true if correlators built on the Vector API can be created in this JVM
+	 */
+	static boolean isAvailable() {
+		return VECTOR_CORRELATOR != null;
+	}
+
+	/**
+	 * @return a Vector API correlator, or a {@link BruteForceCorrelator} if the Vector API is not available
+	 */
+	static FskCorrelator create(CorrelatorTables tables) {
+		FskCorrelator correlator = newCorrelator(VECTOR_CORRELATOR, tables);
+		return correlator != null ? correlator : new BruteForceCorrelator(tables);
+	}
+
+	/**
+	 * @return a single precision Vector API correlator, or a {@link FloatCorrelator} if the Vector
+	 * API is not available
+	 */
+	static FskCorrelator createFloat(CorrelatorTables tables) {
+		FskCorrelator correlator = newCorrelator(FLOAT_VECTOR_CORRELATOR, tables);
+		return correlator != null ? correlator : new FloatCorrelator(tables);
+	}
+
+	private static FskCorrelator newCorrelator(Constructor<?> constructor, CorrelatorTables tables) {
+		if (constructor != null) {
+			try {
+				return (FskCorrelator) constructor.newInstance(tables);
+			} catch (Exception e) {
+				logger.log(Level.WARNING, "Vector correlator could not be created, using the scalar loop", e);
+			}
+		}
+		return null;
+	}
+
+	private static Constructor<?> findCorrelator(String className) {
+		try {
+			Class<?> type = Class.forName(className);
+			Constructor<?> constructor = type.getDeclaredConstructor(CorrelatorTables.class);
+			constructor.setAccessible(true);
+			return constructor;
+		} catch (Exception e) {
+			logger.log(Level.FINE, "Vector correlator not available, using the scalar loop", e);
+		} catch (LinkageError e) {
+			logger.log(Level.FINE, "Vector API not available, using the scalar loop", e);
+		}
+		return null;
+	}
+}
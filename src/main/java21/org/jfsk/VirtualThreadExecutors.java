@@ -0,0 +1,20 @@
+package org.jfsk;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates the virtual thread per task executor used by {@link FskDecodingService}.
+ * 
+ * Only compiled with the {@code java21} profile and loaded through {@link DecodingExecutors}, 
+ * which falls back to platform threads when this class is not available.
+ */
+final class VirtualThreadExecutors {
+
+	private VirtualThreadExecutors() {
+	}
+
+	static ExecutorService newPerStreamExecutor() {
+		return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("fsk-decoder-", 0).factory());
+	}
+}
@@ -0,0 +1,85 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The per-sample demodulation path must not allocate: feeding a long capture that holds no frame
+ * may cost no more than the few bytes the measurement itself takes.
+ *
+ * Every decoder is fed the capture once before it is measured, so the measured pass runs compiled
+ * code: the Vector API only stops boxing its vectors once the JIT has compiled the loop.
+ */
+public class AllocationTest {
+	private static final int CAPTURE_SAMPLES = 2000000;
+	private static final int CHUNK_SAMPLES = 4096;
+	private static final long MAX_ALLOCATED_BYTES = 1024;
+
+	private static final FrameListener IGNORE_FRAMES = new FrameListener() {
+		@Override
+		public void onFrame(FskFrame frame) {
+		}
+	};
+
+	private com.sun.management.ThreadMXBean threads;
+	private short[] capture;
+
+	@Before
+	public void setUp() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		capture = Captures.noise(CAPTURE_SAMPLES, 0.1, 1);
+	}
+
+	@Test
+	public void feedDoesNotAllocate() {
+		FskModemProfile[] profiles = {FskModemProfile.CUSTOM_EXAMPLE, FskModemProfile.BELL202.withSampleRate(48000)};
+		for (FskModemProfile profile : profiles) {
+			for (CorrelatorEngine engine : CorrelatorEngine.values()) {
+				FskDecoder decoder = new FskDecoder(profile, engine);
+				decoder.setFrameListener(IGNORE_FRAMES);
+				feed(decoder);
+
+				long allocated = allocatedBytes();
+				feed(decoder);
+				allocated = allocatedBytes() - allocated;
+				assertTrue(engine + " " + profile + " allocated " + allocated + " bytes", allocated <= MAX_ALLOCATED_BYTES);
+			}
+		}
+	}
+
+	@Test
+	public void multiProfileFeedDoesNotAllocate() {
+		MultiProfileFskDecoder decoder = new MultiProfileFskDecoder(FskDecoder.SAMPLE_RATE);
+		decoder.setFrameListener(IGNORE_FRAMES);
+		feed(decoder);
+
+		long allocated = allocatedBytes();
+		feed(decoder);
+		allocated = allocatedBytes() - allocated;
+		assertTrue("allocated " + allocated + " bytes", allocated <= MAX_ALLOCATED_BYTES);
+	}
+
+	private void feed(FskDecoder decoder) {
+		for (int off = 0; off < capture.length; off += CHUNK_SAMPLES) {
+			decoder.feed(capture, off, Math.min(CHUNK_SAMPLES, capture.length - off));
+		}
+	}
+
+	private void feed(MultiProfileFskDecoder decoder) {
+		for (int off = 0; off < capture.length; off += CHUNK_SAMPLES) {
+			decoder.feed(capture, off, Math.min(CHUNK_SAMPLES, capture.length - off));
+		}
+	}
+
+	private long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,212 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BatchFskDecoderTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void resultsCarryStatusAndInvalidCodes() throws Exception {
+		byte[] payload = Captures.payload(16, 1);
+		byte[] pcm = Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, payload, 0, 1);
+		File clean = write("clean.pcm", pcm);
+		File invalid = write("invalid.pcm", Captures.withInvalidCode(pcm));
+		File truncated = write("truncated.pcm", Arrays.copyOf(pcm, pcm.length / 2 & ~1));
+		File missing = new File(folder.getRoot(), "missing.pcm");
+
+		List<BatchResult> results = decode(Arrays.asList(clean, invalid, truncated, missing), new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				task.run();
+			}
+		}, 2);
+		assertEquals(4, results.size());
+
+		assertEquals(BatchResult.Status.DECODED, results.get(0).getStatus());
+		assertArrayEquals(Captures.frame(payload), results.get(0).getData());
+		assertEquals(0, results.get(0).getInvalidCodeCount());
+
+		assertEquals(BatchResult.Status.DECODED, results.get(1).getStatus());
+		assertEquals(1, results.get(1).getInvalidCodeCount());
+
+		assertEquals(BatchResult.Status.NO_FRAME, results.get(2).getStatus());
+		assertNull(results.get(2).getData());
+
+		assertEquals(BatchResult.Status.FAILED, results.get(3).getStatus());
+		assertNotNull(results.get(3).getError());
+	}
+
+	@Test
+	public void boundsFilesInFlight() throws Exception {
+		List<File> files = captures(10);
+		final AtomicInteger submitted = new AtomicInteger();
+		final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				submitted.incrementAndGet();
+				tasks.add(task);
+			}
+		};
+		final List<BatchResult> results = new CopyOnWriteArrayList<BatchResult>();
+		Thread submitter = decodeInBackground(files, executor, 3, results);
+
+		for (int completed = 0; completed < files.size(); completed++) {
+			int expected = Math.min(completed + 3, files.size());
+			awaitSubmitted(submitted, expected, submitter);
+			assertEquals(expected, submitted.get());
+			tasks.take().run();
+		}
+		submitter.join(10000);
+		assertEquals(10, results.size());
+	}
+
+	@Test
+	public void passesResultsToSinkInCompletionOrder() throws Exception {
+		List<File> files = captures(4);
+		final BlockingQueue<Runnable> tasks = new LinkedBlockingQueue<Runnable>();
+		Executor executor = new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				tasks.add(task);
+			}
+		};
+		final List<BatchResult> results = new CopyOnWriteArrayList<BatchResult>();
+		Thread submitter = decodeInBackground(files, executor, 4, results);
+
+		List<Runnable> submitted = new ArrayList<Runnable>();
+		for (int i = 0; i < files.size(); i++) {
+			Runnable task = tasks.poll(10, TimeUnit.SECONDS);
+			assertNotNull(task);
+			submitted.add(task);
+		}
+		int[] completionOrder = {2, 0, 3, 1};
+		for (int index : completionOrder) {
+			submitted.get(index).run();
+		}
+		submitter.join(10000);
+
+		assertEquals(files.size(), results.size());
+		for (int i = 0; i < completionOrder.length; i++) {
+			assertEquals(files.get(completionOrder[i]), results.get(i).getFile());
+		}
+	}
+
+	@Test
+	public void drainsFilesInFlightWhenExecutorRejects() throws Exception {
+		List<File> files = captures(5);
+		final AtomicInteger accepted = new AtomicInteger();
+		Executor executor = new Executor() {
+			@Override
+			public void execute(final Runnable task) {
+				if (accepted.incrementAndGet() > 2) {
+					throw new RejectedExecutionException();
+				}
+				new Thread() {
+					@Override
+					public void run() {
+						try {
+							Thread.sleep(200);
+						} catch (InterruptedException e) {
+							return;
+						}
+						task.run();
+					}
+				}.start();
+			}
+		};
+		final List<BatchResult> results = new CopyOnWriteArrayList<BatchResult>();
+		try {
+			new BatchFskDecoder(FskModemProfile.CUSTOM_EXAMPLE, executor, 4).decode(files, sink(results));
+			fail("RejectedExecutionException expected");
+		} catch (RejectedExecutionException e) {
+			assertEquals(2, results.size());
+		}
+	}
+
+	private List<BatchResult> decode(List<File> files, Executor executor, int maxInFlight) throws InterruptedException {
+		List<BatchResult> results = new ArrayList<BatchResult>();
+		new BatchFskDecoder(FskModemProfile.CUSTOM_EXAMPLE, executor, maxInFlight).decode(files, sink(results));
+		return results;
+	}
+
+	private static Thread decodeInBackground(final List<File> files, final Executor executor, final int maxInFlight,
+			final List<BatchResult> results) {
+		Thread submitter = new Thread() {
+			@Override
+			public void run() {
+				try {
+					new BatchFskDecoder(FskModemProfile.CUSTOM_EXAMPLE, executor, maxInFlight).decode(files, sink(results));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		};
+		submitter.setDaemon(true);
+		submitter.start();
+		return submitter;
+	}
+
+	/**
+	 * Waits for the submitter to either finish or block with the given number of files submitted.
+	 */
+	private static void awaitSubmitted(AtomicInteger submitted, int count, Thread submitter) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (submitted.get() < count || submitter.getState() == Thread.State.RUNNABLE) {
+			assertTrue("submitter stalled at " + submitted.get() + " files", System.currentTimeMillis() < deadline);
+			Thread.sleep(1);
+		}
+	}
+
+	private static BatchResultSink sink(final List<BatchResult> results) {
+		return new BatchResultSink() {
+			@Override
+			public void accept(BatchResult result) {
+				results.add(result);
+			}
+		};
+	}
+
+	private List<File> captures(int count) throws IOException {
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < count; i++) {
+			files.add(write("capture" + i + ".pcm", Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, Captures.payload(16, i), 0, i)));
+		}
+		return files;
+	}
+
+	private File write(String name, byte[] pcm) throws IOException {
+		File file = folder.newFile(name);
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(pcm);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+}
@@ -0,0 +1,93 @@
+package org.jfsk;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Synthetic captures for the tests, produced by {@link FskEncoder} with fixed seeds so every run
+ * sees the same samples.
+ */
+final class Captures {
+
+	private Captures() {
+	}
+
+	/**
+	 * @return size pseudo-random payload bytes
+	 */
+	static byte[] payload(int size, long seed) {
+		byte[] payload = new byte[size];
+		new Random(seed).nextBytes(payload);
+		return payload;
+	}
+
+	/**
+	 * @return 16-bit little-endian PCM of one frame carrying the payload
+	 */
+	static byte[] encode(FskModemProfile profile, byte[] payload, double noise, long seed) {
+		FskEncoder encoder = new FskEncoder(profile);
+		encoder.setSeed(seed);
+		encoder.setNoise(noise);
+		return encoder.encode(payload);
+	}
+
+	/**
+	 * @return what the decoder returns for a frame carrying the payload: the length header, then the payload
+	 */
+	static byte[] frame(byte[] payload) {
+		byte[] frame = new byte[payload.length + 2];
+		frame[0] = (byte) (payload.length >> 8);
+		frame[1] = (byte) payload.length;
+		System.arraycopy(payload, 0, frame, 2, payload.length);
+		return frame;
+	}
+
+	/**
+	 * @return samples of 16-bit little-endian PCM
+	 */
+	static short[] samples(byte[] pcm) {
+		short[] samples = new short[pcm.length / 2];
+		ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN).asShortBuffer().get(samples);
+		return samples;
+	}
+
+	/**
+	 * @return white gaussian noise of given standard deviation, as a fraction of full scale
+	 */
+	static short[] noise(int count, double level, long seed) {
+		Random random = new Random(seed);
+		short[] samples = new short[count];
+		for (int i = 0; i < count; i++) {
+			long sample = Math.round(level * random.nextGaussian() * 32767);
+			samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+		}
+		return samples;
+	}
+
+	/**
+	 * Replaces the seventh 6-bit code of the first frame with a steady mark tone, which is no valid code. 
+	 * At 500 baud and 8 kHz a code spans 96 samples, and the codes start after 400 samples of leading 
+	 * silence, 64 seizure bits and 16 sync bits.
+	 * 
+	 * @param pcm {@link FskModemProfile#CUSTOM_EXAMPLE} capture at 8 kHz
+	 * @return a copy of the capture whose first frame decodes with one invalid code
+	 */
+	static byte[] withInvalidCode(byte[] pcm) {
+		int freqMark = FskModemProfile.CUSTOM_EXAMPLE.getFreqMark();
+		int start = 400 + (64 + 16) * 16 + 6 * 96;
+		ByteBuffer samples = ByteBuffer.wrap(pcm.clone()).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = start; i < start + 96; i++) {
+			samples.putShort(2 * i, (short) Math.round(16383 * Math.sin(2 * Math.PI * freqMark * i / 8000.0)));
+		}
+		return samples.array();
+	}
+
+	/**
+	 * @return first frame decoded from the PCM with a new decoder, or null if none completed
+	 */
+	static byte[] decode(FskModemProfile profile, CorrelatorEngine engine, byte[] pcm) throws Exception {
+		return new FskDecoder(profile, engine).decode(new ByteArrayInputStream(pcm));
+	}
+}
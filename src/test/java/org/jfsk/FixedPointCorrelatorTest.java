@@ -0,0 +1,63 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+/**
+ * {@link CorrelatorEngine#FIXED_POINT} must decode a golden corpus bit-exactly, and agree with
+ * {@link CorrelatorEngine#BRUTE_FORCE} on it.
+ *
+ * Each capture is a 12-byte payload from {@link Captures#payload(int, long)}, encoded with the
+ * given noise and seed. The expected bytes were recorded from FIXED_POINT; the noisiest captures
+ * decode with errors, and those errors are part of the corpus. The encoder's tones and noise come
+ * from {@link Math} and {@link java.util.Random}, so the CRC-32 of every capture is pinned too: a
+ * mismatch there means the capture changed, not the decoder. Changes to {@link FskEncoder} that
+ * alter its output need the corpus to be recorded again.
+ */
+public class FixedPointCorrelatorTest {
+	private static final Object[][] CORPUS = {
+		// profile, noise, seed, CRC-32 of the PCM, decoded bytes
+		{FskModemProfile.CUSTOM_EXAMPLE, 0.0, 0L, 0xfcdd3c4cL, "000c60b420bb3851d9d47acb933d"},
+		{FskModemProfile.CUSTOM_EXAMPLE, 0.2, 1L, 0xa432cf1dL, "000c73d51abbd89cb8196f0efb68"},
+		{FskModemProfile.BELL202, 0.0, 100L, 0xcb9b09bdL, "000cd69fd5b8b4db12bc45f3e931"},
+		{FskModemProfile.BELL202, 0.2, 101L, 0x47798359L, "000ce9c0cfb85427f2003b36515d"},
+		{FskModemProfile.V23_FORWARD_MODE2, 0.0, 200L, 0x0225a07fL, "000c327869bc3ac600c4d525fdbe"},
+		{FskModemProfile.V23_FORWARD_MODE2, 0.2, 201L, 0xdbf723f2L, null},
+		{FskModemProfile.BELL202.withSampleRate(44100), 0.0, 300L, 0xe011106fL, "000c8e50fdbfc1b0eecb6558104c"},
+		{FskModemProfile.BELL202.withSampleRate(44100), 0.35, 302L, 0x231f6154L, "000c680e09c0811930427bd241f5"},
+		{FskModemProfile.V23_FORWARD_MODE2.withSampleRate(48000), 0.2, 400L, 0x4bec4e05L, "000c88064dc44827f3374e2c3b6c"},
+		{FskModemProfile.V23_FORWARD_MODE2.withSampleRate(48000), 0.3, 402L, 0x1c494a99L, "000c61c458c4099034ae63a632a0"},
+		{FskModemProfile.V23_FORWARD_MODE2.withSampleRate(48000), 0.35, 401L, 0x5c16686dL, "000c9b2747c4e872d27f436fa297"},
+	};
+
+	@Test
+	public void decodesGoldenCorpus() throws Exception {
+		for (Object[] capture : CORPUS) {
+			FskModemProfile profile = (FskModemProfile) capture[0];
+			double noise = (Double) capture[1];
+			long seed = (Long) capture[2];
+			byte[] pcm = Captures.encode(profile, Captures.payload(12, seed), noise, seed);
+			String message = profile + " noise " + noise + " seed " + seed;
+			CRC32 crc = new CRC32();
+			crc.update(pcm, 0, pcm.length);
+			assertEquals(message + ": capture differs from the recorded corpus", capture[3], crc.getValue());
+
+			byte[] fixedPoint = Captures.decode(profile, CorrelatorEngine.FIXED_POINT, pcm);
+			assertArrayEquals(message, bytes((String) capture[4]), fixedPoint);
+			assertArrayEquals(message, Captures.decode(profile, CorrelatorEngine.BRUTE_FORCE, pcm), fixedPoint);
+		}
+	}
+
+	private static byte[] bytes(String hex) {
+		if (hex == null) return null;
+		byte[] bytes = new byte[hex.length() / 2];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,69 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FskDecoderPoolTest {
+	private static final FrameListener IGNORE_FRAMES = new FrameListener() {
+		@Override
+		public void onFrame(FskFrame frame) {
+		}
+	};
+
+	@Test
+	public void decoderReleasedMidFrameComesBackReset() throws Exception {
+		FskDecoderPool pool = new FskDecoderPool(FskModemProfile.CUSTOM_EXAMPLE, 2);
+		FskDecoder decoder = pool.borrow();
+		decoder.setFrameListener(IGNORE_FRAMES);
+		decoder.setMaxDataSize(8);
+		decoder.setMaxInvalidCodes(0);
+		short[] interrupted = Captures.samples(Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, Captures.payload(64, 1), 0, 1));
+		decoder.feed(interrupted, 0, interrupted.length * 2 / 3);
+		pool.release(decoder);
+		assertEquals(1, pool.getIdleCount());
+
+		FskDecoder reused = pool.borrow();
+		assertSame(decoder, reused);
+		assertEquals(0, pool.getIdleCount());
+		byte[] payload = Captures.payload(64, 2);
+		byte[] pcm = Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, payload, 0, 2);
+		List<FskFrame> frames = reused.decodeFrames(new ByteArrayInputStream(pcm));
+		List<FskFrame> freshFrames = new FskDecoder().decodeFrames(new ByteArrayInputStream(pcm));
+		assertEquals(1, frames.size());
+		assertArrayEquals(Captures.frame(payload), frames.get(0).getData());
+		assertEquals(freshFrames.get(0).getSampleOffset(), frames.get(0).getSampleOffset());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void releaseRemovesFrameListener() {
+		FskDecoderPool pool = new FskDecoderPool(FskModemProfile.CUSTOM_EXAMPLE, 1);
+		FskDecoder decoder = pool.borrow();
+		decoder.setFrameListener(IGNORE_FRAMES);
+		pool.release(decoder);
+		pool.borrow().feed(new short[1], 0, 1);
+	}
+
+	@Test
+	public void dropsDecodersAboveMaxIdle() {
+		FskDecoderPool pool = new FskDecoderPool(FskModemProfile.CUSTOM_EXAMPLE, 1);
+		FskDecoder first = pool.borrow();
+		FskDecoder second = pool.borrow();
+		assertNotSame(first, second);
+		pool.release(first);
+		pool.release(second);
+		assertEquals(1, pool.getIdleCount());
+		assertSame(first, pool.borrow());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsDecoderOfAnotherProfile() {
+		new FskDecoderPool(FskModemProfile.CUSTOM_EXAMPLE, 1).release(new FskDecoder(FskModemProfile.BELL202));
+	}
+}
@@ -0,0 +1,209 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class FskDecoderTest {
+
+	@Test
+	public void feedSamplesResumesAfterSingleFrameDecode() throws Exception {
+		byte[] first = Captures.payload(16, 1);
+		byte[] second = Captures.payload(16, 2);
+		FskDecoder decoder = new FskDecoder();
+		assertArrayEquals(Captures.frame(first), decoder.decode(new ByteArrayInputStream(Captures.encode(decoder.getProfile(), first, 0, 1))));
+
+		List<FskFrame> frames = listen(decoder);
+		short[] samples = Captures.samples(Captures.encode(decoder.getProfile(), second, 0, 2));
+		decoder.feed(samples, 0, samples.length);
+		assertEquals(1, frames.size());
+		assertArrayEquals(Captures.frame(second), frames.get(0).getData());
+	}
+
+	@Test
+	public void feedBytesResumesAfterSingleFrameDecode() throws Exception {
+		byte[] first = Captures.payload(16, 1);
+		byte[] second = Captures.payload(16, 2);
+		FskDecoder decoder = new FskDecoder();
+		assertArrayEquals(Captures.frame(first), decoder.decode(new ByteArrayInputStream(Captures.encode(decoder.getProfile(), first, 0, 1))));
+
+		List<FskFrame> frames = listen(decoder);
+		decoder.feed(ByteBuffer.wrap(Captures.encode(decoder.getProfile(), second, 0, 2)));
+		assertEquals(1, frames.size());
+		assertArrayEquals(Captures.frame(second), frames.get(0).getData());
+	}
+
+	@Test
+	public void decodeLeavesFrameListenerOut() throws Exception {
+		byte[] first = Captures.payload(16, 1);
+		byte[] second = Captures.payload(16, 2);
+		FskEncoder encoder = new FskEncoder();
+		ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+		encoder.encode(first, pcm);
+		encoder.encode(second, pcm);
+		FskDecoder decoder = new FskDecoder();
+		List<FskFrame> frames = listen(decoder);
+
+		assertArrayEquals(Captures.frame(first), decoder.decode(new ByteArrayInputStream(pcm.toByteArray())));
+		assertEquals(0, frames.size());
+		decoder.reset();
+		frames = listen(decoder);
+		assertArrayEquals(Captures.frame(first), decoder.decodeAudio(new ByteArrayInputStream(wav(pcm.toByteArray()))));
+		assertEquals(0, frames.size());
+
+		decoder.feed(ByteBuffer.wrap(Captures.encode(decoder.getProfile(), second, 0, 2)));
+		assertEquals(1, frames.size());
+		assertArrayEquals(Captures.frame(second), frames.get(0).getData());
+	}
+
+	@Test
+	public void decodeFramesSplitsBackToBackFrames() throws Exception {
+		int[] sizes = {16, 0, 64, 1, 200};
+		FskEncoder encoder = new FskEncoder();
+		ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+		long[] starts = new long[sizes.length];
+		for (int i = 0; i < sizes.length; i++) {
+			starts[i] = pcm.size() / 2;
+			encoder.encode(Captures.payload(sizes[i], i), pcm);
+		}
+
+		List<FskFrame> frames = new FskDecoder().decodeFrames(new ByteArrayInputStream(pcm.toByteArray()));
+		assertEquals(sizes.length, frames.size());
+		// 400 samples of leading silence and 64 seizure bits of 16 samples, then the 16-bit sync sequence
+		long syncStart = 400 + 64 * 16;
+		long syncEnd = syncStart + 16 * 16;
+		for (int i = 0; i < sizes.length; i++) {
+			FskFrame frame = frames.get(i);
+			assertArrayEquals("frame " + i, Captures.frame(Captures.payload(sizes[i], i)), frame.getData());
+			long offset = frame.getSampleOffset() - starts[i];
+			assertTrue("frame " + i + " synchronized at " + offset, offset > syncStart && offset <= syncEnd);
+		}
+	}
+
+	@Test
+	public void decodeIntoBackToBack() throws Exception {
+		byte[] first = Captures.payload(16, 1);
+		byte[] second = Captures.payload(24, 2);
+		FskDecoder decoder = new FskDecoder();
+		ByteBuffer dst = ByteBuffer.allocateDirect(64);
+
+		assertEquals(18, decoder.decodeInto(new ByteArrayInputStream(Captures.encode(decoder.getProfile(), first, 0, 1)), dst));
+		assertEquals(18, dst.position());
+		assertEquals(26, decoder.decodeInto(new ByteArrayInputStream(Captures.encode(decoder.getProfile(), second, 0, 2)), dst));
+		assertEquals(44, dst.position());
+		assertEquals(-1, decoder.decodeInto(new ByteArrayInputStream(new byte[4000]), dst));
+		assertEquals(44, dst.position());
+
+		byte[] decoded = new byte[44];
+		dst.flip();
+		dst.get(decoded);
+		byte[] expected = new byte[44];
+		System.arraycopy(Captures.frame(first), 0, expected, 0, 18);
+		System.arraycopy(Captures.frame(second), 0, expected, 18, 26);
+		assertArrayEquals(expected, decoded);
+	}
+
+	@Test
+	public void decodeAfterCompletedFrameReturnsNextFrame() throws Exception {
+		byte[] first = Captures.payload(16, 1);
+		byte[] second = Captures.payload(16, 2);
+		FskDecoder decoder = new FskDecoder();
+		assertArrayEquals(Captures.frame(first), decoder.decode(new ByteArrayInputStream(Captures.encode(decoder.getProfile(), first, 0, 1))));
+		assertNull(decoder.decode(new ByteArrayInputStream(new byte[4000])));
+		assertArrayEquals(Captures.frame(second), decoder.decode(new ByteArrayInputStream(Captures.encode(decoder.getProfile(), second, 0, 2))));
+	}
+
+	@Test
+	public void decodesDecimated48kHzCapture() throws Exception {
+		for (FskModemProfile predefined : new FskModemProfile[] {FskModemProfile.CUSTOM_EXAMPLE, FskModemProfile.BELL202}) {
+			FskModemProfile profile = predefined.withSampleRate(48000);
+			assertTrue(profile + " is decimated", FskDecoder.downsamplingCount(profile) > 1);
+			byte[] payload = Captures.payload(64, 1);
+			byte[] pcm = Captures.encode(profile, payload, 0.2, 1);
+			for (CorrelatorEngine engine : CorrelatorEngine.values()) {
+				assertArrayEquals(profile + " " + engine, Captures.frame(payload), Captures.decode(profile, engine, pcm));
+			}
+		}
+	}
+
+	@Test
+	public void lengthHeaderSetsFrameSize() throws Exception {
+		for (int size : new int[] {0, 1, 255, 256, 1000}) {
+			byte[] payload = Captures.payload(size, size);
+			FskDecoder decoder = new FskDecoder();
+			decoder.setMaxDataSize(1000);
+			byte[] decoded = decoder.decode(new ByteArrayInputStream(Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, payload, 0, size)));
+			assertArrayEquals("size " + size, Captures.frame(payload), decoded);
+		}
+	}
+
+	@Test
+	public void truncatedFrameDecodesToNull() throws Exception {
+		byte[] pcm = Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, Captures.payload(64, 1), 0, 1);
+		assertNull(new FskDecoder().decode(new ByteArrayInputStream(pcm, 0, pcm.length / 2 & ~1)));
+	}
+
+	@Test
+	public void dropsFramesAboveMaxDataSize() throws Exception {
+		byte[] tooLong = Captures.payload(17, 1);
+		byte[] payload = Captures.payload(16, 2);
+		FskEncoder encoder = new FskEncoder();
+		ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+		encoder.encode(tooLong, pcm);
+		encoder.encode(payload, pcm);
+
+		FskDecoder decoder = new FskDecoder();
+		decoder.setMaxDataSize(16);
+		assertArrayEquals(Captures.frame(payload), decoder.decode(new ByteArrayInputStream(pcm.toByteArray())));
+	}
+
+	@Test
+	public void rejectsFramesWithTooManyInvalidCodes() throws Exception {
+		byte[] corrupted = Captures.payload(16, 1);
+		byte[] payload = Captures.payload(16, 2);
+		FskEncoder encoder = new FskEncoder();
+		ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+		encoder.encode(corrupted, pcm);
+		encoder.encode(payload, pcm);
+		byte[] stream = Captures.withInvalidCode(pcm.toByteArray());
+
+		FskDecoder decoder = new FskDecoder();
+		assertEquals(corrupted.length + 2, decoder.decode(new ByteArrayInputStream(stream)).length);
+		assertEquals(1, decoder.getInvalidCodeCount());
+
+		decoder.reset();
+		decoder.setMaxInvalidCodes(0);
+		assertArrayEquals(Captures.frame(payload), decoder.decode(new ByteArrayInputStream(stream)));
+		assertEquals(0, decoder.getInvalidCodeCount());
+	}
+
+	private static byte[] wav(byte[] pcm) {
+		ByteBuffer wav = ByteBuffer.allocate(44 + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+		wav.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + pcm.length).put("WAVE".getBytes(StandardCharsets.US_ASCII));
+		wav.put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16).putShort((short) 1).putShort((short) 1).putInt(8000).putInt(16000).putShort((short) 2).putShort((short) 16);
+		wav.put("data".getBytes(StandardCharsets.US_ASCII)).putInt(pcm.length).put(pcm);
+		return wav.array();
+	}
+
+	private static List<FskFrame> listen(FskDecoder decoder) {
+		final List<FskFrame> frames = new ArrayList<FskFrame>();
+		decoder.setFrameListener(new FrameListener() {
+			@Override
+			public void onFrame(FskFrame frame) {
+				frames.add(frame);
+			}
+		});
+		return frames;
+	}
+}
@@ -0,0 +1,69 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class FskDecodingServiceTest {
+
+	@Test
+	public void decodesSubmittedStream() throws Exception {
+		byte[] payload = Captures.payload(16, 1);
+		FskDecodingService service = new FskDecodingService(FskModemProfile.CUSTOM_EXAMPLE);
+		try {
+			Future<byte[]> decodedData = service.submit(new ByteArrayInputStream(Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, payload, 0, 1)));
+			assertArrayEquals(Captures.frame(payload), decodedData.get());
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void passesEveryFrameOfStreamToListener() throws Exception {
+		byte[] first = Captures.payload(16, 1);
+		byte[] second = Captures.payload(16, 2);
+		FskEncoder encoder = new FskEncoder(FskModemProfile.CUSTOM_EXAMPLE);
+		ByteArrayOutputStream callLeg = new ByteArrayOutputStream();
+		encoder.encode(first, callLeg);
+		encoder.encode(second, callLeg);
+
+		final List<FskFrame> frames = new CopyOnWriteArrayList<FskFrame>();
+		FskDecodingService service = new FskDecodingService(FskModemProfile.CUSTOM_EXAMPLE);
+		try {
+			service.submit(new ByteArrayInputStream(callLeg.toByteArray()), new FrameListener() {
+				@Override
+				public void onFrame(FskFrame frame) {
+					frames.add(frame);
+				}
+			}).get();
+		} finally {
+			service.close();
+		}
+		assertEquals(2, frames.size());
+		assertArrayEquals(Captures.frame(first), frames.get(0).getData());
+		assertArrayEquals(Captures.frame(second), frames.get(1).getData());
+	}
+
+	@Test
+	public void interruptedCloseStopsStreamsAndKeepsInterrupt() throws Exception {
+		PipedOutputStream callLeg = new PipedOutputStream();
+		FskDecodingService service = new FskDecodingService(FskModemProfile.CUSTOM_EXAMPLE);
+		Future<byte[]> decodedData = service.submit(new PipedInputStream(callLeg));
+
+		Thread.currentThread().interrupt();
+		service.close();
+		assertTrue(Thread.interrupted());
+		assertTrue(decodedData.isDone());
+		callLeg.close();
+	}
+}
@@ -0,0 +1,85 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+public class FskProfileDetectorTest {
+	private static final FskModemProfile[] PREDEFINED = {FskModemProfile.V23_FORWARD_MODE1, FskModemProfile.V23_FORWARD_MODE2,
+			FskModemProfile.V23_BACKWARD, FskModemProfile.BELL202, FskModemProfile.CUSTOM_EXAMPLE};
+
+	@Test
+	public void detectsEveryPredefinedProfile() throws Exception {
+		for (int i = 0; i < PREDEFINED.length; i++) {
+			byte[] pcm = Captures.encode(PREDEFINED[i], Captures.payload(16, i), 0, i);
+			assertEquals(PREDEFINED[i], new FskProfileDetector(FskDecoder.SAMPLE_RATE).detect(new ByteArrayInputStream(pcm)));
+		}
+	}
+
+	@Test
+	public void detectsProfileThroughNoise() throws Exception {
+		byte[] pcm = Captures.encode(FskModemProfile.BELL202, Captures.payload(16, 1), 0.2, 1);
+		assertEquals(FskModemProfile.BELL202, new FskProfileDetector(FskDecoder.SAMPLE_RATE).detect(new ByteArrayInputStream(pcm)));
+	}
+
+	@Test
+	public void noiseMatchesNoProfile() {
+		FskProfileDetector detector = new FskProfileDetector(FskDecoder.SAMPLE_RATE);
+		for (long seed = 1; seed <= 3; seed++) {
+			short[] noise = Captures.noise(8000, 0.3, seed);
+			assertNull(detector.detect(noise, 0, noise.length));
+		}
+	}
+
+	@Test
+	public void silenceMatchesNoProfile() throws Exception {
+		assertNull(new FskProfileDetector(FskDecoder.SAMPLE_RATE).detect(new ByteArrayInputStream(new byte[16000])));
+	}
+
+	@Test
+	public void readsNoFurtherThanScan() throws Exception {
+		int silence = 5000;
+		short[] samples = Captures.samples(Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, Captures.payload(64, 1), 0, 1));
+		ByteBuffer pcm = ByteBuffer.allocate((silence + samples.length) * 2).order(ByteOrder.LITTLE_ENDIAN);
+		pcm.position(silence * 2);
+		pcm.asShortBuffer().put(samples);
+		CountingInputStream in = new CountingInputStream(pcm.array());
+
+		FskProfileDetector detector = new FskProfileDetector(FskDecoder.SAMPLE_RATE);
+		detector.setScanMillis(100);
+		assertEquals(FskModemProfile.CUSTOM_EXAMPLE, detector.detect(in));
+		// the encoder's own leading silence of 400 samples comes first, then 800 samples of scan
+		assertTrue("read " + in.count + " bytes", in.count <= (silence + 400 + 800) * 2);
+	}
+
+	/**
+	 * Counts the bytes read, with no mark support so the detector does not rewind.
+	 */
+	private static final class CountingInputStream extends FilterInputStream {
+		long count;
+
+		CountingInputStream(byte[] pcm) {
+			super(new ByteArrayInputStream(pcm));
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int read = super.read(b, off, len);
+			if (read > 0) count += read;
+			return read;
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MultiChannelFskDecoderTest {
+
+	@Test
+	public void decodesEachChannelOfStereoCapture() throws Exception {
+		byte[] left = Captures.payload(16, 1);
+		byte[] right = Captures.payload(16, 2);
+		MultiChannelFskDecoder decoder = new MultiChannelFskDecoder(FskModemProfile.CUSTOM_EXAMPLE, 2);
+
+		List<FskFrame> frames = decoder.decodeFrames(new ByteArrayInputStream(stereo(left, right)));
+		assertEquals(2, frames.size());
+		for (FskFrame frame : frames) {
+			assertArrayEquals("channel " + frame.getChannel(), Captures.frame(frame.getChannel() == 0 ? left : right), frame.getData());
+		}
+		assertEquals(frames.get(0).getSampleOffset(), frames.get(1).getSampleOffset());
+		assertEquals(0, frames.get(0).getChannel());
+		assertEquals(1, frames.get(1).getChannel());
+	}
+
+	@Test
+	public void failedReadLeavesNoFramesBehind() throws Exception {
+		MultiChannelFskDecoder decoder = new MultiChannelFskDecoder(FskModemProfile.CUSTOM_EXAMPLE, 2);
+		InputStream failing = new FilterInputStream(new ByteArrayInputStream(stereo(Captures.payload(16, 1), Captures.payload(16, 2)))) {
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+				if (read == -1) {
+					throw new IOException("connection lost");
+				}
+				return read;
+			}
+		};
+		try {
+			decoder.decodeFrames(failing);
+			fail("IOException expected");
+		} catch (IOException e) {
+			// both frames have completed, but the call failed
+		}
+
+		byte[] left = Captures.payload(16, 3);
+		byte[] right = Captures.payload(16, 4);
+		List<FskFrame> frames = decoder.decodeFrames(new ByteArrayInputStream(stereo(left, right)));
+		assertEquals(2, frames.size());
+		assertArrayEquals(Captures.frame(left), frames.get(0).getData());
+		assertArrayEquals(Captures.frame(right), frames.get(1).getData());
+	}
+
+	/**
+	 * @return interleaved 16-bit little-endian PCM with one frame per channel
+	 */
+	private static byte[] stereo(byte[] left, byte[] right) {
+		short[] leftSamples = Captures.samples(Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, left, 0, 1));
+		short[] rightSamples = Captures.samples(Captures.encode(FskModemProfile.CUSTOM_EXAMPLE, right, 0, 2));
+		int length = Math.max(leftSamples.length, rightSamples.length);
+		ByteBuffer stereo = ByteBuffer.allocate(length * 4).order(ByteOrder.LITTLE_ENDIAN);
+		for (int i = 0; i < length; i++) {
+			stereo.putShort(i < leftSamples.length ? leftSamples[i] : 0);
+			stereo.putShort(i < rightSamples.length ? rightSamples[i] : 0);
+		}
+		return stereo.array();
+	}
+}
@@ -0,0 +1,84 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Captures are made at 16 kHz, the lowest rate at which every decodable predefined profile, V.23
+ * mode 1 included, decodes on its own.
+ */
+public class MultiProfileFskDecoderTest {
+	private static final int SAMPLE_RATE = 16000;
+
+	@Test
+	public void tagsV23ForwardMode1() throws Exception {
+		assertTagged(FskModemProfile.V23_FORWARD_MODE1);
+	}
+
+	@Test
+	public void tagsV23ForwardMode2() throws Exception {
+		assertTagged(FskModemProfile.V23_FORWARD_MODE2);
+	}
+
+	@Test
+	public void tagsBell202() throws Exception {
+		assertTagged(FskModemProfile.BELL202);
+	}
+
+	@Test
+	public void tagsCustomExample() throws Exception {
+		assertTagged(FskModemProfile.CUSTOM_EXAMPLE);
+	}
+
+	/**
+	 * The 390 and 450 Hz tones of the V.23 backward channel cannot be told apart over a correlation
+	 * window of one mark period, so its frames do not decode, with one profile or many. They must not
+	 * be reported under another profile either.
+	 */
+	@Test
+	public void reportsNoFrameOfV23Backward() throws Exception {
+		FskModemProfile profile = FskModemProfile.V23_BACKWARD.withSampleRate(SAMPLE_RATE);
+		byte[] pcm = Captures.encode(profile, Captures.payload(16, 1), 0, 1);
+		assertEquals(0, new MultiProfileFskDecoder(SAMPLE_RATE).decodeFrames(new ByteArrayInputStream(pcm)).size());
+	}
+
+	@Test
+	public void separatesProfilesSharingMarkTone() throws Exception {
+		FskModemProfile mode1 = FskModemProfile.V23_FORWARD_MODE1.withSampleRate(SAMPLE_RATE);
+		FskModemProfile mode2 = FskModemProfile.V23_FORWARD_MODE2.withSampleRate(SAMPLE_RATE);
+		byte[] first = Captures.payload(16, 1);
+		byte[] second = Captures.payload(16, 2);
+		ByteArrayOutputStream pcm = new ByteArrayOutputStream();
+		new FskEncoder(mode1).encode(first, pcm);
+		new FskEncoder(mode2).encode(second, pcm);
+		new FskEncoder(mode1).encode(second, pcm);
+
+		MultiProfileFskDecoder decoder = new MultiProfileFskDecoder(mode2, mode1);
+		assertEquals(3, decoder.getToneCount());
+		List<FskFrame> frames = decoder.decodeFrames(new ByteArrayInputStream(pcm.toByteArray()));
+		assertEquals(3, frames.size());
+		assertFrame(mode1, first, frames.get(0));
+		assertFrame(mode2, second, frames.get(1));
+		assertFrame(mode1, second, frames.get(2));
+	}
+
+	private static void assertTagged(FskModemProfile predefined) throws Exception {
+		FskModemProfile profile = predefined.withSampleRate(SAMPLE_RATE);
+		byte[] payload = Captures.payload(16, 1);
+		byte[] pcm = Captures.encode(profile, payload, 0, 1);
+		List<FskFrame> frames = new MultiProfileFskDecoder(SAMPLE_RATE).decodeFrames(new ByteArrayInputStream(pcm));
+		assertEquals(1, frames.size());
+		assertFrame(profile, payload, frames.get(0));
+	}
+
+	private static void assertFrame(FskModemProfile profile, byte[] payload, FskFrame frame) {
+		assertEquals(profile, frame.getProfile());
+		assertArrayEquals(Captures.frame(payload), frame.getData());
+	}
+}
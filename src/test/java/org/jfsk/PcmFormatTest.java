@@ -0,0 +1,171 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Headers are built by hand, chunk by chunk, so each test shows the layout it covers.
+ */
+public class PcmFormatTest {
+	private static final byte[] SAMPLES = {0x56, 0x34, 0x12, 0x65, 0x43, 0x21};
+
+	@Test
+	public void wavSkipsJunkAndListChunks() throws Exception {
+		byte[] wav = riff(
+				chunk("JUNK", false, new byte[3]),
+				chunk("fmt ", false, fmt(1, 1, 8000, 16)),
+				chunk("LIST", false, ascii("INFOISFT")),
+				chunk("data", false, SAMPLES));
+		InputStream in = new ByteArrayInputStream(wav);
+		PcmFormat format = PcmFormat.read(in);
+
+		assertEquals(8000, format.getSampleRate());
+		assertEquals(1, format.getChannels());
+		assertEquals(16, format.getBitsPerSample());
+		assertFalse(format.isFloatingPoint());
+		assertFalse(format.isBigEndian());
+		assertEquals(wav.length - SAMPLES.length, format.getDataOffset());
+		assertEquals(SAMPLES.length, format.getDataLength());
+		assertEquals(SAMPLES[0], (byte) in.read());
+		assertEquals((short) 0x3456, sample(format, SAMPLES));
+	}
+
+	@Test
+	public void wavExtensible24Bit() throws Exception {
+		ByteBuffer fmt = ByteBuffer.allocate(40).order(ByteOrder.LITTLE_ENDIAN);
+		fmt.put(fmt(0xFFFE, 2, 48000, 24));
+		fmt.putShort((short) 22).putShort((short) 24).putInt(3);
+		fmt.putShort((short) 1);   // sub-format GUID of integer PCM, rest left zero
+		PcmFormat format = PcmFormat.read(new ByteArrayInputStream(riff(chunk("fmt ", false, fmt.array()), chunk("data", false, SAMPLES))));
+
+		assertEquals(48000, format.getSampleRate());
+		assertEquals(2, format.getChannels());
+		assertEquals(24, format.getBitsPerSample());
+		assertEquals(6, format.getFrameSize());
+		assertFalse(format.isFloatingPoint());
+		assertEquals((short) 0x1234, sample(format, SAMPLES));
+	}
+
+	@Test
+	public void wavFloat() throws Exception {
+		byte[] samples = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putFloat(0.5f).putFloat(-2f).array();
+		PcmFormat format = PcmFormat.read(new ByteArrayInputStream(riff(chunk("fmt ", false, fmt(3, 1, 8000, 32)), chunk("data", false, samples))));
+
+		assertTrue(format.isFloatingPoint());
+		assertEquals(32, format.getBitsPerSample());
+		assertEquals((short) 16384, sample(format, samples));
+		assertEquals(Short.MIN_VALUE, format.sample(ByteBuffer.wrap(samples).order(format.getByteOrder()), 4));
+	}
+
+	@Test
+	public void aiffCSowt() throws Exception {
+		ByteBuffer comm = ByteBuffer.allocate(24);
+		comm.put(comm(1, 3, 16, 16000)).put(ascii("sowt")).putShort((short) 0);
+		byte[] aiff = form("AIFC", chunk("FVER", true, new byte[4]), chunk("COMM", true, comm.array()), chunk("SSND", true, ssnd(SAMPLES)));
+		PcmFormat format = PcmFormat.read(new ByteArrayInputStream(aiff));
+
+		assertEquals(16000, format.getSampleRate());
+		assertEquals(16, format.getBitsPerSample());
+		assertFalse(format.isBigEndian());
+		assertEquals(aiff.length - SAMPLES.length, format.getDataOffset());
+		assertEquals(SAMPLES.length, format.getDataLength());
+		assertEquals((short) 0x3456, sample(format, SAMPLES));
+	}
+
+	@Test
+	public void aiff24Bit() throws Exception {
+		byte[] aiff = form("AIFF", chunk("COMM", true, comm(1, 2, 24, 44100)), chunk("SSND", true, ssnd(SAMPLES)));
+		PcmFormat format = PcmFormat.read(new ByteArrayInputStream(aiff));
+
+		assertEquals(44100, format.getSampleRate());
+		assertEquals(24, format.getBitsPerSample());
+		assertTrue(format.isBigEndian());
+		assertEquals((short) 0x5634, sample(format, SAMPLES));
+	}
+
+	@Test
+	public void emptyDataChunkFollowedByOtherChunks() throws Exception {
+		byte[] wav = riff(chunk("fmt ", false, fmt(1, 1, 8000, 16)), chunk("data", false, new byte[0]), chunk("LIST", false, ascii("INFO")));
+		assertEquals(0, PcmFormat.read(new ByteArrayInputStream(wav)).getDataLength());
+	}
+
+	@Test
+	public void dataRunsToEndOfStreamedFile() throws Exception {
+		// a streaming writer's header: sizes written for an empty file, samples appended after it
+		byte[] header = riff(chunk("fmt ", false, fmt(1, 1, 8000, 16)), chunk("data", false, new byte[0]));
+		assertEquals(Long.MAX_VALUE, PcmFormat.read(new ByteArrayInputStream(concat(header, SAMPLES))).getDataLength());
+
+		ByteBuffer unknownSize = ByteBuffer.wrap(header.clone()).order(ByteOrder.LITTLE_ENDIAN);
+		unknownSize.putInt(4, -1).putInt(header.length - 4, -1);
+		assertEquals(Long.MAX_VALUE, PcmFormat.read(new ByteArrayInputStream(concat(unknownSize.array(), SAMPLES))).getDataLength());
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsCompressedWav() throws Exception {
+		PcmFormat.read(new ByteArrayInputStream(riff(chunk("fmt ", false, fmt(2, 1, 8000, 4)), chunk("data", false, SAMPLES))));
+	}
+
+	private static short sample(PcmFormat format, byte[] samples) {
+		return format.sample(ByteBuffer.wrap(samples).order(format.getByteOrder()), 0);
+	}
+
+	private static byte[] fmt(int formatTag, int channels, int sampleRate, int bitsPerSample) {
+		int blockAlign = channels * bitsPerSample / 8;
+		return ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN).putShort((short) formatTag).putShort((short) channels)
+				.putInt(sampleRate).putInt(sampleRate * blockAlign).putShort((short) blockAlign).putShort((short) bitsPerSample).array();
+	}
+
+	/**
+	 * @return an AIFF COMM chunk body, with the sample rate as an 80-bit extended float
+	 */
+	private static byte[] comm(int channels, int frames, int bitsPerSample, int sampleRate) {
+		int exponent = 63 - Long.numberOfLeadingZeros(sampleRate);
+		return ByteBuffer.allocate(18).putShort((short) channels).putInt(frames).putShort((short) bitsPerSample)
+				.putShort((short) (16383 + exponent)).putLong((long) sampleRate << (63 - exponent)).array();
+	}
+
+	private static byte[] ssnd(byte[] samples) {
+		return ByteBuffer.allocate(8 + samples.length).putInt(0).putInt(0).put(samples).array();
+	}
+
+	private static byte[] chunk(String id, boolean bigEndian, byte[] body) {
+		ByteBuffer chunk = ByteBuffer.allocate(8 + body.length + (body.length & 1));
+		chunk.put(ascii(id));
+		chunk.order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN).putInt(body.length);
+		chunk.put(body);
+		return chunk.array();
+	}
+
+	private static byte[] riff(byte[]... chunks) {
+		byte[] body = concat(ascii("WAVE"), concat(chunks));
+		return concat(ascii("RIFF"), ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(body.length).array(), body);
+	}
+
+	private static byte[] form(String type, byte[]... chunks) {
+		byte[] body = concat(ascii(type), concat(chunks));
+		return concat(ascii("FORM"), ByteBuffer.allocate(4).putInt(body.length).array(), body);
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.write(part, 0, part.length);
+		}
+		return out.toByteArray();
+	}
+}
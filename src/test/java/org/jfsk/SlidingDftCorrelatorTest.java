@@ -0,0 +1,45 @@
+package org.jfsk;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+/**
+ * {@link CorrelatorEngine#SLIDING_DFT} must decode exactly the bytes {@link CorrelatorEngine#BRUTE_FORCE}
+ * does.
+ */
+public class SlidingDftCorrelatorTest {
+	private static final FskModemProfile[] PROFILES = {
+		FskModemProfile.CUSTOM_EXAMPLE,
+		FskModemProfile.BELL202,
+		FskModemProfile.V23_FORWARD_MODE2,
+		FskModemProfile.CUSTOM_EXAMPLE.withSampleRate(16000),
+		FskModemProfile.BELL202.withSampleRate(44100),
+		FskModemProfile.V23_FORWARD_MODE2.withSampleRate(48000),
+	};
+
+	@Test
+	public void decodesCleanCapturesLikeBruteForce() throws Exception {
+		for (int i = 0; i < PROFILES.length; i++) {
+			byte[] payload = Captures.payload(64, i);
+			byte[] pcm = Captures.encode(PROFILES[i], payload, 0, i);
+			byte[] bruteForce = Captures.decode(PROFILES[i], CorrelatorEngine.BRUTE_FORCE, pcm);
+			assertArrayEquals(PROFILES[i].toString(), Captures.frame(payload), bruteForce);
+			assertArrayEquals(PROFILES[i].toString(), bruteForce, Captures.decode(PROFILES[i], CorrelatorEngine.SLIDING_DFT, pcm));
+		}
+	}
+
+	@Test
+	public void decodesNoisyCapturesLikeBruteForce() throws Exception {
+		double[] noiseLevels = {0.05, 0.15, 0.3};
+		for (int i = 0; i < PROFILES.length; i++) {
+			for (int n = 0; n < noiseLevels.length; n++) {
+				long seed = i * noiseLevels.length + n;
+				byte[] pcm = Captures.encode(PROFILES[i], Captures.payload(64, seed), noiseLevels[n], seed);
+				assertArrayEquals(PROFILES[i] + " noise " + noiseLevels[n],
+						Captures.decode(PROFILES[i], CorrelatorEngine.BRUTE_FORCE, pcm),
+						Captures.decode(PROFILES[i], CorrelatorEngine.SLIDING_DFT, pcm));
+			}
+		}
+	}
+}